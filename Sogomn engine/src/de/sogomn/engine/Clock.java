@@ -21,6 +21,8 @@ import de.sogomn.engine.util.AbstractListenerContainer;
 /**
  * A class to be used for continuous updating (e.g. for a game loop).
  * It is recommended to call the "update" method in a regular interval.
+ * A clock with a fixed delta does not depend on the wall time. It can be used for deterministic simulations
+ * (e.g. lockstep multiplayer or replays), where every update has to advance the game by exactly the same amount.
  * @author Sogomn
  *
  */
@@ -28,23 +30,39 @@ public final class Clock extends AbstractListenerContainer<IUpdatable> {
 	
 	private long initialTime, lastTime;
 	private long ticks;
+	private double fixedDelta;
+	
+	/**
+	 * Delta which makes the clock use the wall time.
+	 */
+	public static final double WALL_TIME = 0;
 	
 	private static final double NANO_SECONDS_PER_SECOND = 1000000000f;
 	
 	/**
 	 * Constructs a new Clock object.
+	 * @param fixedDelta The delta passed to the listeners on every update in seconds or WALL_TIME
 	 */
-	public Clock() {
+	public Clock(final double fixedDelta) {
+		this.fixedDelta = fixedDelta;
+		
 		reset();
 	}
 	
+	/**
+	 * Constructs a new Clock object which uses the wall time.
+	 */
+	public Clock() {
+		this(WALL_TIME);
+	}
+	
 	/**
 	 * Updates the clock and notifies all listeners.
-	 * @return The elapsed time since the last update in seconds
+	 * @return The elapsed time since the last update in seconds or the fixed delta
 	 */
 	public double update() {
 		final long now = System.nanoTime();
-		final double elapsed = (System.nanoTime() - lastTime) / NANO_SECONDS_PER_SECOND;
+		final double elapsed = fixedDelta == WALL_TIME ? (now - lastTime) / NANO_SECONDS_PER_SECOND : fixedDelta;
 		
 		notifyListeners(updatable -> updatable.update(elapsed));
 		
@@ -72,16 +90,22 @@ public final class Clock extends AbstractListenerContainer<IUpdatable> {
 	
 	/**
 	 * Returns the elapsed time since the clock was started.
+	 * With a fixed delta this is the simulated time (the fixed delta times the tick counter).
 	 * @return The elapsed time in seconds
 	 */
 	public double elapsed() {
+		if (fixedDelta != WALL_TIME) {
+			return ticks * fixedDelta;
+		}
+		
 		final double elapsed = (System.nanoTime() - initialTime) / NANO_SECONDS_PER_SECOND;
 		
 		return elapsed;
 	}
 	
 	/**
-	 * Returns the elapsed time since the last update.
+	 * Returns the elapsed wall time since the last update.
+	 * Useful for interpolation when the clock uses a fixed delta.
 	 * @return The elapsed time in seconds
 	 */
 	public double elapsedSinceLastUpdate() {
@@ -90,4 +114,12 @@ public final class Clock extends AbstractListenerContainer<IUpdatable> {
 		return elapsed;
 	}
 	
+	/**
+	 * Returns the fixed delta.
+	 * @return The delta in seconds or WALL_TIME
+	 */
+	public double getFixedDelta() {
+		return fixedDelta;
+	}
+	
 }
@@ -0,0 +1,382 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.debug;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import de.sogomn.engine.net.AsyncTCPConnection;
+import de.sogomn.engine.net.AsyncTCPServer;
+import de.sogomn.engine.net.ConnectionGroup;
+import de.sogomn.engine.net.LinkSimulator;
+import de.sogomn.engine.net.MessageCodec;
+import de.sogomn.engine.net.OutboundQueue.OverflowPolicy;
+import de.sogomn.engine.net.TCPConnection;
+import de.sogomn.engine.net.TCPServer;
+
+/**
+ * The NetworkBenchmark class measures the throughput and latency of the different transports on the local machine.
+ * Optionally the traffic can be routed through a LinkSimulator to measure the behavior under poor network conditions.
+ * Every benchmark sends a fixed amount of frames in one direction and reports messages per second, bytes per second
+ * and the 50th and 99th percentile of the one-way latency.
+ * @author Sogomn
+ *
+ */
+public final class NetworkBenchmark {
+	
+	private PrintStream out;
+	
+	private LinkSimulator simulator;
+	private int messageCount, messageSize;
+	
+	private static final String LOCALHOST = "127.0.0.1";
+	private static final int DEFAULT_MESSAGE_COUNT = 100000;
+	private static final int DEFAULT_MESSAGE_SIZE = 64;
+	private static final int STAMP_SIZE = Long.BYTES;
+	private static final double NANO_SECONDS_PER_SECOND = 1000000000.0;
+	
+	/**
+	 * Constructs a new NetworkBenchmark object.
+	 * @param out The results will be printed to this stream
+	 */
+	public NetworkBenchmark(final PrintStream out) {
+		this.out = out;
+		
+		messageCount = DEFAULT_MESSAGE_COUNT;
+		messageSize = DEFAULT_MESSAGE_SIZE;
+	}
+	
+	/**
+	 * Constructs a new NetworkBenchmark object and uses the "System.out" as the output.
+	 */
+	public NetworkBenchmark() {
+		this(System.out);
+	}
+	
+	private int connectPort(final int serverPort) {
+		if (simulator == null) {
+			return serverPort;
+		}
+		
+		simulator.setTarget(LOCALHOST, serverPort);
+		
+		return simulator.getPort();
+	}
+	
+	private byte[] stamp(final byte[] payload) {
+		ByteBuffer.wrap(payload).putLong(0, System.nanoTime());
+		
+		return payload;
+	}
+	
+	private Thread startReceiver(final Supplier<byte[]> reader, final long[] latencies) {
+		final Runnable runnable = () -> {
+			for (int i = 0; i < latencies.length; i++) {
+				final byte[] frame = reader.get();
+				
+				if (frame == null) {
+					Arrays.fill(latencies, i, latencies.length, Long.MAX_VALUE);
+					
+					break;
+				}
+				
+				latencies[i] = System.nanoTime() - ByteBuffer.wrap(frame).getLong(0);
+			}
+		};
+		final Thread thread = new Thread(runnable, "NetworkBenchmark receiver");
+		
+		thread.setDaemon(true);
+		thread.start();
+		
+		return thread;
+	}
+	
+	private Result report(final Result result) {
+		out.println(result);
+		
+		return result;
+	}
+	
+	/**
+	 * Sends frames with the synchronous "writeFrame" method of the TCPConnection class.
+	 * @return The result or null in case of failure
+	 */
+	public Result benchmarkTCPConnection() {
+		final TCPServer server = new TCPServer(0);
+		final TCPConnection client = new TCPConnection(LOCALHOST, connectPort(server.getPort()));
+		final TCPConnection receiver = new TCPConnection(server.acceptConnection());
+		final long[] latencies = new long[messageCount];
+		final byte[] payload = new byte[messageSize];
+		
+		try {
+			final long start = System.nanoTime();
+			final Thread thread = startReceiver(receiver::readFrame, latencies);
+			
+			for (int i = 0; i < messageCount; i++) {
+				client.writeFrame(stamp(payload));
+			}
+			
+			thread.join();
+			
+			final double seconds = (System.nanoTime() - start) / NANO_SECONDS_PER_SECOND;
+			
+			return report(new Result("TCPConnection", messageCount, messageSize, seconds, latencies));
+		} catch (final InterruptedException ex) {
+			ex.printStackTrace();
+			
+			return null;
+		} finally {
+			client.close();
+			receiver.close();
+			server.close();
+		}
+	}
+	
+	/**
+	 * Sends frames with the "enqueue" method of the TCPConnection class.
+	 * @return The result or null in case of failure
+	 */
+	public Result benchmarkQueuedTCPConnection() {
+		final TCPServer server = new TCPServer(0);
+		final TCPConnection client = new TCPConnection(LOCALHOST, connectPort(server.getPort()));
+		final TCPConnection receiver = new TCPConnection(server.acceptConnection());
+		final long[] latencies = new long[messageCount];
+		final byte[] payload = new byte[messageSize];
+		
+		try {
+			final long start = System.nanoTime();
+			final Thread thread = startReceiver(receiver::readFrame, latencies);
+			
+			for (int i = 0; i < messageCount; i++) {
+				client.enqueue(ConnectionGroup.encodeFrame(stamp(payload)), OverflowPolicy.BLOCK);
+			}
+			
+			client.flush();
+			thread.join();
+			
+			final double seconds = (System.nanoTime() - start) / NANO_SECONDS_PER_SECOND;
+			
+			return report(new Result("Queued TCPConnection", messageCount, messageSize, seconds, latencies));
+		} catch (final InterruptedException ex) {
+			ex.printStackTrace();
+			
+			return null;
+		} finally {
+			client.close();
+			receiver.close();
+			server.close();
+		}
+	}
+	
+	/**
+	 * Sends frames with the AsyncTCPConnection class.
+	 * @return The result or null in case of failure
+	 */
+	public Result benchmarkAsyncTCPConnection() {
+		final AsyncTCPServer server = new AsyncTCPServer(0);
+		final long[] latencies = new long[messageCount];
+		final byte[] payload = new byte[messageSize];
+		
+		AsyncTCPConnection client = null, receiver = null;
+		
+		try {
+			final CompletableFuture<AsyncTCPConnection> accepted = server.accept();
+			
+			client = AsyncTCPConnection.connect(LOCALHOST, connectPort(server.getPort())).get();
+			receiver = accepted.get();
+			
+			final AsyncTCPConnection reader = receiver;
+			final Supplier<byte[]> readFrame = () -> reader.readFrame().exceptionally(t -> null).join();
+			final long start = System.nanoTime();
+			final Thread thread = startReceiver(readFrame, latencies);
+			
+			CompletableFuture<Void> written = null;
+			
+			for (int i = 0; i < messageCount; i++) {
+				written = client.writeFrame(stamp(payload));
+			}
+			
+			if (written != null) {
+				written.get();
+			}
+			
+			thread.join();
+			
+			final double seconds = (System.nanoTime() - start) / NANO_SECONDS_PER_SECOND;
+			
+			return report(new Result("AsyncTCPConnection", messageCount, messageSize, seconds, latencies));
+		} catch (final Exception ex) {
+			ex.printStackTrace();
+			
+			return null;
+		} finally {
+			if (client != null) {
+				client.close();
+			}
+			
+			if (receiver != null) {
+				receiver.close();
+			}
+			
+			server.close();
+		}
+	}
+	
+	/**
+	 * Encodes and decodes the given message repeatedly without any network involved.
+	 * @param codec The codec
+	 * @param message The message; its type needs to be registered
+	 * @return The result
+	 */
+	public Result benchmarkCodec(final MessageCodec codec, final Object message) {
+		final ByteBuffer buffer = ByteBuffer.allocate(Short.MAX_VALUE);
+		
+		codec.encode(message, buffer);
+		
+		final int size = buffer.position();
+		final long start = System.nanoTime();
+		
+		for (int i = 0; i < messageCount; i++) {
+			buffer.clear();
+			codec.encode(message, buffer);
+			buffer.flip();
+			codec.decode(buffer);
+		}
+		
+		final double seconds = (System.nanoTime() - start) / NANO_SECONDS_PER_SECOND;
+		
+		return report(new Result("MessageCodec " + message.getClass().getSimpleName(), messageCount, size, seconds, null));
+	}
+	
+	/**
+	 * Runs all transport benchmarks and prints the results.
+	 */
+	public void benchmarkAll() {
+		benchmarkTCPConnection();
+		benchmarkQueuedTCPConnection();
+		benchmarkAsyncTCPConnection();
+	}
+	
+	/**
+	 * Routes the traffic of the transport benchmarks through the given simulator.
+	 * The target of the simulator is set by the benchmark.
+	 * @param simulator The simulator or null to connect directly
+	 */
+	public void setSimulator(final LinkSimulator simulator) {
+		this.simulator = simulator;
+	}
+	
+	/**
+	 * Sets the amount of messages sent per benchmark.
+	 * @param messageCount The message count
+	 */
+	public void setMessageCount(final int messageCount) {
+		this.messageCount = messageCount;
+	}
+	
+	/**
+	 * Sets the size of the messages. Has to be at least eight bytes since the send time is part of the message.
+	 * @param messageSize The message size in bytes
+	 */
+	public void setMessageSize(final int messageSize) {
+		this.messageSize = Math.max(messageSize, STAMP_SIZE);
+	}
+	
+	/**
+	 * Holds the result of one benchmark.
+	 * @author Sogomn
+	 *
+	 */
+	public static final class Result {
+		
+		private final String name;
+		private final int messages, messageSize;
+		private final double seconds;
+		private final long[] latencies;
+		
+		private Result(final String name, final int messages, final int messageSize, final double seconds, final long[] latencies) {
+			this.name = name;
+			this.messages = messages;
+			this.messageSize = messageSize;
+			this.seconds = seconds;
+			this.latencies = latencies == null ? null : latencies.clone();
+			
+			if (this.latencies != null) {
+				Arrays.sort(this.latencies);
+			}
+		}
+		
+		/**
+		 * Returns a string containing all measured values.
+		 */
+		@Override
+		public String toString() {
+			final String throughput = String.format("%s - %.0f msg/s, %.2f MB/s", name, getMessagesPerSecond(), getBytesPerSecond() / 1000000);
+			
+			if (latencies == null) {
+				return throughput;
+			}
+			
+			return throughput + String.format(", p50 %.3f ms, p99 %.3f ms", getPercentile(0.5) * 1000, getPercentile(0.99) * 1000);
+		}
+		
+		/**
+		 * Returns the amount of messages per second.
+		 * @return The throughput
+		 */
+		public double getMessagesPerSecond() {
+			return messages / seconds;
+		}
+		
+		/**
+		 * Returns the amount of payload bytes per second.
+		 * @return The throughput
+		 */
+		public double getBytesPerSecond() {
+			return (double)messages * messageSize / seconds;
+		}
+		
+		/**
+		 * Returns the latency percentile. Lost messages count as the highest latency.
+		 * @param percentile The percentile from 0 to 1
+		 * @return The latency in seconds or NaN if no latencies have been measured
+		 */
+		public double getPercentile(final double percentile) {
+			if (latencies == null || latencies.length == 0) {
+				return Double.NaN;
+			}
+			
+			final int index = (int)Math.min(Math.ceil(percentile * latencies.length), latencies.length) - 1;
+			final long latency = latencies[Math.max(index, 0)];
+			
+			return latency == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : latency / NANO_SECONDS_PER_SECOND;
+		}
+		
+		/**
+		 * Returns the total time the benchmark took.
+		 * @return The time in seconds
+		 */
+		public double getSeconds() {
+			return seconds;
+		}
+		
+	}
+	
+}
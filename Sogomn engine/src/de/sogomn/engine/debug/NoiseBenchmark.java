@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.debug;
+
+import java.io.PrintStream;
+
+import de.sogomn.engine.noise.GradientNoise;
+import de.sogomn.engine.noise.INoise2D;
+import de.sogomn.engine.noise.PerlinNoise;
+import de.sogomn.engine.noise.RandomNoise;
+import de.sogomn.engine.noise.SimplexNoise;
+
+/**
+ * The NoiseBenchmark class measures how many nanoseconds the noise implementations need per sample.
+ * Every benchmark samples a square region a few times to warm up the JIT compiler before it is measured.
+ * The sum of all samples is kept so the samples can not be optimized away.
+ * Single samples, the bulk fill and the parallel fill are measured separately.
+ * The bulk fill can also be verified against single samples, which fails if any value differs.
+ * @author Sogomn
+ *
+ */
+public final class NoiseBenchmark {
+	
+	private PrintStream out;
+	
+	private int size;
+	private double step;
+	private int warmups, iterations;
+	
+	private double sum;
+	private double[] region;
+	
+	private static final int DEFAULT_SIZE = 1024;
+	private static final double DEFAULT_STEP = 1 / 32.0;
+	private static final int DEFAULT_WARMUPS = 5;
+	private static final int DEFAULT_ITERATIONS = 5;
+	private static final int GRID_SIZE = 64;
+	private static final long SEED = 1;
+	
+	/*
+	 * Widths below the lane count of batched fills, around it and around multiples of it, sampled at an unaligned origin
+	 */
+	private static final int[] VERIFIED_WIDTHS = {1, 3, 7, 8, 9, 63, 64, 65, 100, 129};
+	private static final int VERIFIED_HEIGHT = 3;
+	private static final double VERIFIED_ORIGIN = -17.3;
+	
+	/**
+	 * Constructs a new NoiseBenchmark object.
+	 * @param out The results will be printed to this stream
+	 */
+	public NoiseBenchmark(final PrintStream out) {
+		this.out = out;
+		
+		size = DEFAULT_SIZE;
+		step = DEFAULT_STEP;
+		warmups = DEFAULT_WARMUPS;
+		iterations = DEFAULT_ITERATIONS;
+	}
+	
+	/**
+	 * Constructs a new NoiseBenchmark object and uses the "System.out" as the output.
+	 */
+	public NoiseBenchmark() {
+		this(System.out);
+	}
+	
+	private void sample(final INoise2D noise) {
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				sum += noise.getValue(x * step, y * step);
+			}
+		}
+	}
+	
+	private void fill(final INoise2D noise, final boolean parallel) {
+		if (region == null || region.length != size * size) {
+			region = new double[size * size];
+		}
+		
+		if (parallel) {
+			noise.fillParallel(region, 0, 0, step, size, size);
+		} else {
+			noise.fill(region, 0, 0, step, size, size);
+		}
+		
+		sum += region[region.length / 2];
+	}
+	
+	private double measure(final String name, final Runnable iteration) {
+		for (int i = 0; i < warmups; i++) {
+			iteration.run();
+		}
+		
+		final long start = System.nanoTime();
+		
+		for (int i = 0; i < iterations; i++) {
+			iteration.run();
+		}
+		
+		final double nanoseconds = (double)(System.nanoTime() - start) / iterations / size / size;
+		
+		out.println(String.format("%s - %.2f ns/sample", name, nanoseconds));
+		
+		return nanoseconds;
+	}
+	
+	/**
+	 * Measures the time the given noise needs per sample when sampled one by one and prints it.
+	 * @param name The name printed with the result
+	 * @param noise The noise
+	 * @return The time per sample in nanoseconds
+	 */
+	public double benchmark(final String name, final INoise2D noise) {
+		return measure(name, () -> sample(noise));
+	}
+	
+	/**
+	 * Measures the time the given noise needs per sample when a region is filled at once and prints it.
+	 * @param name The name printed with the result
+	 * @param noise The noise
+	 * @param parallel Whether "fillParallel" or "fill" should be used
+	 * @return The time per sample in nanoseconds
+	 */
+	public double benchmarkFill(final String name, final INoise2D noise, final boolean parallel) {
+		return measure(name + (parallel ? " (parallel fill)" : " (fill)"), () -> fill(noise, parallel));
+	}
+	
+	private double compare(final INoise2D noise, final double[] values, final double x, final double y, final int width, final int height) {
+		double difference = 0;
+		
+		for (int row = 0; row < height; row++) {
+			for (int column = 0; column < width; column++) {
+				final double expected = noise.getValue(x + column * step, y + row * step);
+				
+				difference = Math.max(difference, Math.abs(values[row * width + column] - expected));
+			}
+		}
+		
+		return difference;
+	}
+	
+	/**
+	 * Compares the bulk fill of the given noise with single samples and prints the largest difference.
+	 * Besides the benchmarked region, narrow regions and regions whose width is not a multiple of a typical lane count
+	 * are filled at an unaligned origin, so the fallback paths of batched fills are covered as well.
+	 * Optimized fill paths are expected to return exactly the same values as "getValue".
+	 * @param name The name printed with the result
+	 * @param noise The noise
+	 * @return The largest absolute difference, which is always zero
+	 * @throws IllegalStateException If any filled value differs from its single sample
+	 */
+	public double verify(final String name, final INoise2D noise) {
+		fill(noise, false);
+		
+		double difference = compare(noise, region, 0, 0, size, size);
+		
+		for (final int width : VERIFIED_WIDTHS) {
+			final double[] values = new double[width * VERIFIED_HEIGHT];
+			
+			noise.fill(values, VERIFIED_ORIGIN, VERIFIED_ORIGIN, step, width, VERIFIED_HEIGHT);
+			difference = Math.max(difference, compare(noise, values, VERIFIED_ORIGIN, VERIFIED_ORIGIN, width, VERIFIED_HEIGHT));
+		}
+		
+		out.println(name + " (fill) - max. difference " + difference);
+		
+		if (difference != 0) {
+			throw new IllegalStateException(name + " fill differs from single samples by " + difference);
+		}
+		
+		return difference;
+	}
+	
+	/**
+	 * Runs the benchmarks of all noise implementations and prints the results.
+	 */
+	public void benchmarkAll() {
+		final PerlinNoise perlin = new PerlinNoise(GRID_SIZE, GRID_SIZE, SEED);
+		final GradientNoise gradient = new GradientNoise(SEED);
+		final SimplexNoise simplex = new SimplexNoise(SEED);
+		final RandomNoise random = new RandomNoise(SEED);
+		
+		verify("PerlinNoise", perlin);
+		verify("GradientNoise", gradient);
+		verify("RandomNoise", random);
+		
+		benchmark("PerlinNoise", perlin);
+		benchmarkFill("PerlinNoise", perlin, false);
+		benchmarkFill("PerlinNoise", perlin, true);
+		benchmark("GradientNoise", gradient);
+		benchmarkFill("GradientNoise", gradient, false);
+		benchmarkFill("GradientNoise", gradient, true);
+		benchmark("SimplexNoise", simplex);
+		benchmark("SimplexNoise (3D slice)", simplex.slice(0.5));
+		benchmark("RandomNoise", random);
+		benchmarkFill("RandomNoise", random, false);
+		benchmarkFill("RandomNoise", random, true);
+		
+		out.println("Checksum - " + sum);
+	}
+	
+	/**
+	 * Sets the width and height of the sampled region in samples.
+	 * @param size The size
+	 */
+	public void setSize(final int size) {
+		this.size = size;
+	}
+	
+	/**
+	 * Sets the distance between two samples in noise coordinates.
+	 * @param step The step
+	 */
+	public void setStep(final double step) {
+		this.step = step;
+	}
+	
+	/**
+	 * Sets how often the region is sampled before and during the measurement.
+	 * @param warmups The amount of warm-up iterations
+	 * @param iterations The amount of measured iterations
+	 */
+	public void setIterations(final int warmups, final int iterations) {
+		this.warmups = warmups;
+		this.iterations = iterations;
+	}
+	
+}
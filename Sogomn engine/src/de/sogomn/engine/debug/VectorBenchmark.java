@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.debug;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import de.sogomn.engine.util.Vector2D;
+
+/**
+ * The VectorBenchmark class compares the copying methods of the Vector2D class with the in-place ones.
+ * Every benchmark updates an array of vectors a few times to warm up the JIT compiler before it is measured.
+ * Besides the time per operation, the bytes allocated per operation are printed if the JVM can measure them (HotSpot can).
+ * @author Sogomn
+ *
+ */
+public final class VectorBenchmark {
+	
+	private PrintStream out;
+	
+	private int count;
+	private int warmups, iterations;
+	
+	private Vector2D[] vectors;
+	private double sum;
+	
+	private static final int DEFAULT_COUNT = 100_000;
+	private static final int DEFAULT_WARMUPS = 20;
+	private static final int DEFAULT_ITERATIONS = 50;
+	private static final double ANGLE = 1.5;
+	private static final double SEEK_FACTOR = 0.01;
+	private static final long SEED = 1;
+	
+	/**
+	 * Constructs a new VectorBenchmark object.
+	 * @param out The results will be printed to this stream
+	 */
+	public VectorBenchmark(final PrintStream out) {
+		this.out = out;
+		
+		count = DEFAULT_COUNT;
+		warmups = DEFAULT_WARMUPS;
+		iterations = DEFAULT_ITERATIONS;
+	}
+	
+	/**
+	 * Constructs a new VectorBenchmark object and uses the "System.out" as the output.
+	 */
+	public VectorBenchmark() {
+		this(System.out);
+	}
+	
+	private void reset() {
+		final Random random = new Random(SEED);
+		
+		vectors = new Vector2D[count];
+		
+		for (int i = 0; i < count; i++) {
+			vectors[i] = new Vector2D(random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1);
+		}
+	}
+	
+	/*Returns -1 if the JVM does not support measuring allocations*/
+	private static long getAllocatedBytes() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+			
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Measures the given operation and prints the time and the allocated bytes per operation.
+	 * The operation is applied to every vector of the array, which is recreated before every benchmark.
+	 * @param name The name printed with the result
+	 * @param operation The operation, which gets the array and the index of the vector
+	 * @return The time per operation in nanoseconds
+	 */
+	public double benchmark(final String name, final IOperation operation) {
+		reset();
+		
+		for (int i = 0; i < warmups; i++) {
+			for (int j = 0; j < count; j++) {
+				operation.apply(vectors, j);
+			}
+		}
+		
+		final long allocatedBefore = getAllocatedBytes();
+		final long start = System.nanoTime();
+		
+		for (int i = 0; i < iterations; i++) {
+			for (int j = 0; j < count; j++) {
+				operation.apply(vectors, j);
+			}
+		}
+		
+		final long operations = (long)iterations * count;
+		final double nanoseconds = (double)(System.nanoTime() - start) / operations;
+		final long allocatedAfter = getAllocatedBytes();
+		
+		for (final Vector2D vector : vectors) {
+			sum += vector.getX();
+		}
+		
+		if (allocatedBefore < 0 || allocatedAfter < 0) {
+			out.println(String.format("%s - %.2f ns/op", name, nanoseconds));
+		} else {
+			final double bytes = (double)(allocatedAfter - allocatedBefore) / operations;
+			
+			out.println(String.format("%s - %.2f ns/op, %.1f bytes/op", name, nanoseconds, bytes));
+		}
+		
+		return nanoseconds;
+	}
+	
+	/**
+	 * Runs the benchmarks of the copying and the in-place methods and prints the results.
+	 */
+	public void benchmarkAll() {
+		final Vector2D.Rotation rotation = new Vector2D.Rotation(ANGLE);
+		final Vector2D target = new Vector2D(0.5, -0.25);
+		final Vector2D step = new Vector2D();
+		
+		benchmark("rotate", (vectors, i) -> vectors[i] = vectors[i].rotate(ANGLE));
+		benchmark("rotateInPlace", (vectors, i) -> vectors[i].rotateInPlace(ANGLE));
+		benchmark("rotateInPlace (Rotation)", (vectors, i) -> vectors[i].rotateInPlace(rotation));
+		benchmark("normalize", (vectors, i) -> vectors[i] = vectors[i].normalize());
+		benchmark("normalizeInPlace", (vectors, i) -> vectors[i].normalizeInPlace());
+		benchmark("seek (distance)", (vectors, i) -> {
+			final Vector2D vector = vectors[i];
+			
+			vector.add(vector.distance(target).scaleInPlace(SEEK_FACTOR));
+		});
+		benchmark("seek (distanceInto + addScaled)", (vectors, i) -> {
+			final Vector2D vector = vectors[i];
+			
+			vector.addScaled(vector.distanceInto(target, step), SEEK_FACTOR);
+		});
+		
+		out.println("Checksum - " + sum);
+	}
+	
+	/**
+	 * Sets the amount of vectors.
+	 * @param count The count
+	 */
+	public void setCount(final int count) {
+		this.count = count;
+	}
+	
+	/**
+	 * Sets how often the vectors are updated before and during the measurement.
+	 * @param warmups The amount of warm-up iterations
+	 * @param iterations The amount of measured iterations
+	 */
+	public void setIterations(final int warmups, final int iterations) {
+		this.warmups = warmups;
+		this.iterations = iterations;
+	}
+	
+	/**
+	 * An operation on one vector of an array.
+	 * @author Sogomn
+	 *
+	 */
+	@FunctionalInterface
+	public interface IOperation {
+		
+		/**
+		 * Applies the operation to the vector with the given index. The vector may be replaced.
+		 * @param vectors The vectors
+		 * @param index The index
+		 */
+		void apply(final Vector2D[] vectors, final int index);
+		
+	}
+	
+}
@@ -17,15 +17,20 @@
 package de.sogomn.engine.fx;
 
 import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.util.Random;
 
 import de.sogomn.engine.IUpdatable;
 import de.sogomn.engine.util.Scheduler;
 import de.sogomn.engine.util.Scheduler.Task;
+import de.sogomn.engine.util.Transform2D;
+import de.sogomn.engine.util.Vector2D;
 
 /**
  * This class can be used as a camera for games.
  * In order to apply the translation the method "apply" needs to be called before rendering. It also needs to get updated every tick.
  * After rendering the method "revert" should be called to undo the translation.
+ * The whole camera transform is computed once per update (and whenever it is changed) and can also be used to convert between world and screen coordinates.
  * @author Sogomn
  *
  */
@@ -48,6 +53,11 @@ public final class Camera implements IUpdatable {
 	private double rotationOffset;
 	private Scheduler shakeScheduler;
 	private Shaker shaker;
+	private Random random;
+	
+	private Transform2D transform;
+	private AffineTransform affineTransform;
+	private AffineTransform previousTransform;
 	
 	/**
 	 * If passed to the method "setSmoothness" the camera position will automatically be the target position.
@@ -72,6 +82,9 @@ public final class Camera implements IUpdatable {
 		maxX = maxY = NO_MAXIMUM;
 		shakeScheduler = new Scheduler();
 		shaker = new Shaker();
+		random = new Random();
+		transform = new Transform2D();
+		affineTransform = new AffineTransform();
 	}
 	
 	private void move(final double delta) {
@@ -123,55 +136,76 @@ public final class Camera implements IUpdatable {
 		shaker.update(delta);
 		
 		clampPosition();
+		updateTransform();
+	}
+	
+	/*
+	 * Same result as rotating around the pivot, translating by the negative position and scaling around the center point, in that order
+	 */
+	private void updateTransform() {
+		final double actualRotation = getRotation();
+		final double actualScale = scale != 0 ? scale : 1;
+		final double cos = Math.cos(actualRotation);
+		final double sin = Math.sin(actualRotation);
+		
+		/*Translation before the rotation*/
+		final double translationX = centerX - centerX * actualScale - getX() - pivotX;
+		final double translationY = centerY - centerY * actualScale - getY() - pivotY;
+		
+		final double m00 = cos * actualScale;
+		final double m10 = sin * actualScale;
+		final double m01 = -sin * actualScale;
+		final double m11 = cos * actualScale;
+		final double m02 = cos * translationX - sin * translationY + pivotX;
+		final double m12 = sin * translationX + cos * translationY + pivotY;
+		
+		transform.set(m00, m10, m01, m11, m02, m12);
 	}
 	
 	/**
 	 * Applies the camera transform to the given Graphics2D object.
+	 * The current transform of the Graphics2D object is saved so it can be restored by "revert".
 	 * @param g The Graphics2D object
 	 */
 	public void apply(final Graphics2D g) {
-		final double actualX = getX();
-		final double actualY = getY();
-		final double actualRotation = getRotation();
+		previousTransform = g.getTransform();
 		
-		if (actualRotation != 0) {
-			g.rotate(actualRotation, pivotX, pivotY);
-		}
-		
-		g.translate(-actualX, -actualY);
-		
-		if (scale != 0) {
-			g.translate(centerX, centerY);
-			g.scale(scale, scale);
-			g.translate(-centerX, -centerY);
-		}
+		g.transform(transform.copyTo(affineTransform));
 	}
 	
 	/**
-	 * Reverts the camera tramsform of the given Graphics2D object.
+	 * Restores the transform the given Graphics2D object had before the camera transform was applied.
 	 * This should only be called after the method "apply" has been called.
 	 * @param g The Graphics2D object
 	 */
 	public void revert(final Graphics2D g) {
-		final double actualX = getX();
-		final double actualY = getY();
-		final double actualRotation = getRotation();
-		
-		if (scale != 0) {
-			final double reverseScale = 1 / scale;
+		if (previousTransform != null) {
+			g.setTransform(previousTransform);
 			
-			g.translate(centerX, centerY);
-			g.scale(reverseScale, reverseScale);
-			g.translate(-centerX, -centerY);
-		}
-		
-		g.translate(actualX, actualY);
-		
-		if (actualRotation != 0) {
-			g.rotate(-actualRotation, pivotX, pivotY);
+			previousTransform = null;
 		}
 	}
 	
+	/**
+	 * Converts a point from world to screen coordinates.
+	 * @param world The point in world coordinates
+	 * @param target The vector the result is written to; may be the same as the point
+	 * @return The target
+	 */
+	public Vector2D worldToScreen(final Vector2D world, final Vector2D target) {
+		return transform.transform(world, target);
+	}
+	
+	/**
+	 * Converts a point from screen to world coordinates, e.g. to find out what the mouse points at.
+	 * @param screen The point in screen coordinates
+	 * @param target The vector the result is written to; may be the same as the point
+	 * @return The target
+	 */
+	public Vector2D screenToWorld(final Vector2D screen, final Vector2D target) {
+		return transform.inverseTransform(screen, target);
+	}
+	
 	/**
 	 * Resets the camera position and target.
 	 * Also stops camera shake.
@@ -194,6 +228,8 @@ public final class Camera implements IUpdatable {
 		
 		shakeScheduler.clearTasks();
 		shaker.stop();
+		
+		updateTransform();
 	}
 	
 	/**
@@ -202,6 +238,8 @@ public final class Camera implements IUpdatable {
 	public void resetRotation() {
 		rotation = 0;
 		pivotX = pivotY = 0;
+		
+		updateTransform();
 	}
 	
 	/**
@@ -210,6 +248,8 @@ public final class Camera implements IUpdatable {
 	public void resetScaling() {
 		scale = 0;
 		centerX = centerY = 0;
+		
+		updateTransform();
 	}
 	
 	/**
@@ -264,6 +304,8 @@ public final class Camera implements IUpdatable {
 		
 		clampTarget();
 		clampPosition();
+		
+		updateTransform();
 	}
 	
 	/**
@@ -304,6 +346,8 @@ public final class Camera implements IUpdatable {
 	 */
 	public void setRotation(final double degrees) {
 		rotation = Math.toRadians(degrees);
+		
+		updateTransform();
 	}
 	
 	/**
@@ -315,6 +359,8 @@ public final class Camera implements IUpdatable {
 	public void setRotationPivot(final double pivotX, final double pivotY) {
 		this.pivotX = pivotX;
 		this.pivotY = pivotY;
+		
+		updateTransform();
 	}
 	
 	/**
@@ -324,6 +370,8 @@ public final class Camera implements IUpdatable {
 	 */
 	public void setScale(final double scale) {
 		this.scale = scale;
+		
+		updateTransform();
 	}
 	
 	/**
@@ -334,6 +382,8 @@ public final class Camera implements IUpdatable {
 	public void setScaleCenterPoint(final double centerX, final double centerY) {
 		this.centerX = centerX;
 		this.centerY = centerY;
+		
+		updateTransform();
 	}
 	
 	/**
@@ -345,6 +395,15 @@ public final class Camera implements IUpdatable {
 		this.smoothness = smoothness;
 	}
 	
+	/**
+	 * Sets the seed of the random generator used for the camera shake.
+	 * Makes the shake reproducible, e.g. for replays or lockstep simulations.
+	 * @param seed The seed
+	 */
+	public void setShakeSeed(final long seed) {
+		random.setSeed(seed);
+	}
+	
 	/**
 	 * Returns the x coordinate of the camera.
 	 * Ignores scale.
@@ -436,6 +495,15 @@ public final class Camera implements IUpdatable {
 		return scale;
 	}
 	
+	/**
+	 * Returns the transform from world to screen coordinates.
+	 * It is updated by the camera and must not be modified.
+	 * @return The transform
+	 */
+	public Transform2D getTransform() {
+		return transform;
+	}
+	
 	/**
 	 * Returns whether the camera is shaking or not.
 	 * @return The state
@@ -464,9 +532,9 @@ public final class Camera implements IUpdatable {
 				return;
 			}
 			
-			xOffset = Math.random() * xIntensity * 2 - xIntensity;
-			yOffset = Math.random() * yIntensity * 2 - yIntensity;
-			rotationOffset = Math.random() * rotationIntensity * 2 - rotationIntensity;
+			xOffset = random.nextDouble() * xIntensity * 2 - xIntensity;
+			yOffset = random.nextDouble() * yIntensity * 2 - yIntensity;
+			rotationOffset = random.nextDouble() * rotationIntensity * 2 - rotationIntensity;
 			
 			if (duration > 0) {
 				xIntensity -= initialXIntensity / duration * delta;
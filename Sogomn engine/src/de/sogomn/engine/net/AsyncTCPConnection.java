@@ -0,0 +1,411 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * An asynchronous connection which never blocks the calling thread.
+ * Reads and writes return futures which are completed by the channel group threads.
+ * Failures complete the futures exceptionally (an EOFException if the remote side has closed the connection)
+ * and close the connection. Data is sent and received as frames, compatible to the frames of the TCPConnection class.
+ * Pings of a TCPConnection are answered and compressed frames are decompressed while reading.
+ * Operations are executed in the order they were issued. Cancelling a future before its operation has started skips it;
+ * cancelling a read that has already started discards the frame it would have returned, a write that has already started is finished anyway.
+ * @author Sogomn
+ *
+ */
+public final class AsyncTCPConnection implements IClosable {
+	
+	private AsynchronousSocketChannel channel;
+	private String address;
+	private int port;
+	
+	private CompletableFuture<?> readChain, writeChain;
+	private volatile int maxFrameLength;
+	private FrameCompressor compressor;
+	
+	private volatile boolean open;
+	
+	private static final int FRAME_HEADER_SIZE = Integer.BYTES;
+	private static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+	private static final int DEFAULT_BUFFER_SIZE = 256;
+	
+	/**
+	 * Constructs a new AsyncTCPConnection object from an already connected channel.
+	 * @param channel The channel
+	 */
+	public AsyncTCPConnection(final AsynchronousSocketChannel channel) {
+		this.channel = channel;
+		
+		try {
+			final InetSocketAddress remote = (InetSocketAddress)channel.getRemoteAddress();
+			
+			address = remote.getAddress().getHostAddress();
+			port = remote.getPort();
+		} catch (final IOException | NullPointerException ex) {
+			address = null;
+		}
+		
+		readChain = CompletableFuture.completedFuture(null);
+		writeChain = CompletableFuture.completedFuture(null);
+		maxFrameLength = DEFAULT_MAX_FRAME_LENGTH;
+		compressor = new FrameCompressor();
+		open = channel.isOpen();
+	}
+	
+	/**
+	 * Connects to the given host asynchronously.
+	 * @param address The host address
+	 * @param port The port
+	 * @return A future which is completed with the connection once it has been established
+	 */
+	public static CompletableFuture<AsyncTCPConnection> connect(final String address, final int port) {
+		final CompletableFuture<AsyncTCPConnection> future = new CompletableFuture<AsyncTCPConnection>();
+		
+		try {
+			final AsynchronousSocketChannel channel = AsynchronousSocketChannel.open();
+			final InetSocketAddress remote = new InetSocketAddress(address, port);
+			
+			channel.connect(remote, null, new CompletionHandler<Void, Void>() {
+				@Override
+				public void completed(final Void result, final Void attachment) {
+					future.complete(new AsyncTCPConnection(channel));
+				}
+				
+				@Override
+				public void failed(final Throwable t, final Void attachment) {
+					closeQuietly(channel);
+					future.completeExceptionally(t);
+				}
+			});
+		} catch (final IOException | RuntimeException ex) {
+			future.completeExceptionally(ex);
+		}
+		
+		return future;
+	}
+	
+	private static void closeQuietly(final AsynchronousSocketChannel channel) {
+		try {
+			channel.close();
+		} catch (final IOException ex) {
+			//...
+		}
+	}
+	
+	private <T> CompletableFuture<T> fail(final Throwable t) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		
+		future.completeExceptionally(t);
+		
+		return future;
+	}
+	
+	private <T> CompletableFuture<T> schedule(final boolean read, final Supplier<CompletableFuture<T>> operation) {
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+		
+		synchronized (this) {
+			final CompletableFuture<?> previous = read ? readChain : writeChain;
+			final CompletableFuture<?> next = previous.handle((value, t) -> null).thenCompose(ignored -> {
+				if (result.isDone()) {
+					return CompletableFuture.completedFuture(null);
+				}
+				
+				return operation.get().handle((value, t) -> {
+					if (t == null) {
+						result.complete(value);
+					} else {
+						result.completeExceptionally(t);
+					}
+					
+					return null;
+				});
+			});
+			
+			if (read) {
+				readChain = next;
+			} else {
+				writeChain = next;
+			}
+		}
+		
+		return result;
+	}
+	
+	private CompletableFuture<ByteBuffer> readFully(final ByteBuffer buffer) {
+		final Transfer transfer = new Transfer(buffer, true);
+		
+		transfer.start();
+		
+		return transfer.future;
+	}
+	
+	private CompletableFuture<ByteBuffer> writeFully(final ByteBuffer buffer) {
+		final Transfer transfer = new Transfer(buffer, false);
+		
+		transfer.start();
+		
+		return transfer.future;
+	}
+	
+	private CompletableFuture<ByteBuffer> readFrameNow() {
+		final ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+		
+		return readFully(header).thenCompose(buffer -> {
+			final int length = buffer.getInt(0);
+			
+			if (length == TCPConnection.PING || length == TCPConnection.PONG) {
+				return readFully(ByteBuffer.allocate(TCPConnection.CONTROL_PAYLOAD_SIZE)).thenCompose(payload -> {
+					if (length == TCPConnection.PING) {
+						final ByteBuffer pong = ByteBuffer.allocate(FRAME_HEADER_SIZE + TCPConnection.CONTROL_PAYLOAD_SIZE);
+						
+						pong.putInt(TCPConnection.PONG);
+						pong.putLong(payload.getLong(0));
+						pong.flip();
+						write(pong);
+					}
+					
+					return readFrameNow();
+				});
+			} else if (length == TCPConnection.COMPRESSED) {
+				return readFully(ByteBuffer.allocate(2 * Integer.BYTES)).thenCompose(lengths -> {
+					final int originalLength = lengths.getInt(0);
+					final int compressedLength = lengths.getInt(Integer.BYTES);
+					
+					if (originalLength < 0 || originalLength > maxFrameLength || compressedLength < 0 || compressedLength > maxFrameLength) {
+						final IOException ex = new IOException("Invalid compressed frame length: " + originalLength + ", " + compressedLength);
+						
+						close();
+						
+						return fail(ex);
+					}
+					
+					return readFully(ByteBuffer.allocate(compressedLength)).thenCompose(data -> {
+						final byte[] original = new byte[originalLength];
+						
+						try {
+							compressor.inflate(data.array(), compressedLength, original, 0, originalLength);
+						} catch (final IOException ex) {
+							close();
+							
+							return fail(ex);
+						}
+						
+						return CompletableFuture.completedFuture(ByteBuffer.wrap(original));
+					});
+				});
+			} else if (length < 0 || length > maxFrameLength) {
+				final IOException ex = new IOException("Invalid frame length: " + length);
+				
+				close();
+				
+				return fail(ex);
+			}
+			
+			return readFully(ByteBuffer.allocate(length)).thenApply(data -> {
+				data.flip();
+				
+				return data;
+			});
+		});
+	}
+	
+	/**
+	 * Closes the connection. Pending and queued operations fail with an AsynchronousCloseException.
+	 * This method does nothing if the connection is not open.
+	 */
+	@Override
+	public void close() {
+		if (!open) {
+			return;
+		}
+		
+		open = false;
+		
+		closeQuietly(channel);
+		compressor.end();
+	}
+	
+	/**
+	 * Reads the next frame.
+	 * @return A future which is completed with the frame data
+	 */
+	public CompletableFuture<byte[]> readFrame() {
+		return schedule(true, () -> readFrameNow().thenApply(ByteBuffer::array));
+	}
+	
+	/**
+	 * Reads the next frame and decodes it with the given codec.
+	 * @param codec The codec
+	 * @return A future which is completed with the message
+	 */
+	public CompletableFuture<Object> readMessage(final MessageCodec codec) {
+		return schedule(true, () -> readFrameNow().thenApply(codec::decode));
+	}
+	
+	/**
+	 * Writes the given data as a frame.
+	 * @param data The data
+	 * @return A future which is completed once the frame has been written
+	 */
+	public CompletableFuture<Void> writeFrame(final byte[] data) {
+		final ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + data.length);
+		
+		frame.putInt(data.length);
+		frame.put(data);
+		frame.flip();
+		
+		return write(frame);
+	}
+	
+	/**
+	 * Writes an already encoded frame (e.g. one created by ConnectionGroup.encodeFrame).
+	 * The buffer is not copied; only a view with its own position is written.
+	 * @param frame The frame, from its position to its limit
+	 * @return A future which is completed once the frame has been written
+	 */
+	public CompletableFuture<Void> write(final ByteBuffer frame) {
+		final ByteBuffer view = frame.duplicate();
+		
+		return schedule(false, () -> writeFully(view).thenApply(buffer -> (Void)null));
+	}
+	
+	/**
+	 * Encodes the message with the given codec and writes it as a frame.
+	 * @param codec The codec
+	 * @param message The message
+	 * @return A future which is completed once the frame has been written
+	 */
+	public CompletableFuture<Void> writeMessage(final MessageCodec codec, final Object message) {
+		final ByteBuffer frame;
+		
+		try {
+			frame = ConnectionGroup.encodeFrame(codec, message, DEFAULT_BUFFER_SIZE);
+		} catch (final BufferOverflowException | IllegalArgumentException | IllegalStateException ex) {
+			return fail(ex);
+		}
+		
+		return write(frame);
+	}
+	
+	/**
+	 * Sets the maximum length of incoming frames. Longer frames close the connection.
+	 * @param maxFrameLength The maximum length in bytes
+	 */
+	public void setMaxFrameLength(final int maxFrameLength) {
+		this.maxFrameLength = maxFrameLength;
+	}
+	
+	/**
+	 * Sets the preset dictionary used to decompress frames. It has to be the one used by the sending side.
+	 * @param dictionary The dictionary or null to use none
+	 */
+	public void setCompressionDictionary(final byte[] dictionary) {
+		compressor.setDictionary(dictionary);
+	}
+	
+	/**
+	 * Returns the remote host address.
+	 * @return The address
+	 */
+	public String getAddress() {
+		return address;
+	}
+	
+	/**
+	 * Returns the remote port.
+	 * @return The port
+	 */
+	public int getPort() {
+		return port;
+	}
+	
+	/**
+	 * Returns true if the connection is open, false otherwise.
+	 * @return The state
+	 */
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+	
+	private final class Transfer implements CompletionHandler<Integer, Void> {
+		
+		private final ByteBuffer buffer;
+		private final boolean read;
+		private final CompletableFuture<ByteBuffer> future;
+		
+		public Transfer(final ByteBuffer buffer, final boolean read) {
+			this.buffer = buffer;
+			this.read = read;
+			
+			future = new CompletableFuture<ByteBuffer>();
+		}
+		
+		private void next() {
+			if (read) {
+				channel.read(buffer, null, this);
+			} else {
+				channel.write(buffer, null, this);
+			}
+		}
+		
+		public void start() {
+			if (!open) {
+				future.completeExceptionally(new AsynchronousCloseException());
+				
+				return;
+			}
+			
+			try {
+				next();
+			} catch (final RuntimeException ex) {
+				failed(ex, null);
+			}
+		}
+		
+		@Override
+		public void completed(final Integer count, final Void attachment) {
+			if (count < 0) {
+				failed(new EOFException("Connection closed by remote host"), null);
+			} else if (buffer.hasRemaining()) {
+				start();
+			} else {
+				future.complete(buffer);
+			}
+		}
+		
+		@Override
+		public void failed(final Throwable t, final Void attachment) {
+			close();
+			
+			future.completeExceptionally(t);
+		}
+		
+	}
+	
+}
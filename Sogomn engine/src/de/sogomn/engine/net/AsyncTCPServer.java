@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An asynchronous TCP server which accepts AsyncTCPConnection objects without blocking the calling thread.
+ * @author Sogomn
+ *
+ */
+public class AsyncTCPServer implements IClosable {
+	
+	private AsynchronousServerSocketChannel server;
+	
+	private volatile boolean open;
+	
+	/**
+	 * Constructs a new AsyncTCPServer object and binds the server to the given port.
+	 * @param port The port
+	 */
+	public AsyncTCPServer(final int port) {
+		try {
+			server = AsynchronousServerSocketChannel.open();
+			open = true;
+			server.bind(new InetSocketAddress(port));
+		} catch (final IOException ex) {
+			handleException(ex);
+		}
+	}
+	
+	/**
+	 * This method gets called when an exeption occurs while creating the server. The default implementation prints the error and closes the server.
+	 * @param ex The exception that has been thrown
+	 */
+	protected void handleException(final Exception ex) {
+		System.err.println("Server error: " + ex.getMessage());
+		
+		close();
+	}
+	
+	/**
+	 * Closes the server. Pending accepts fail with an AsynchronousCloseException.
+	 * This method does nothing if the server is not open.
+	 */
+	@Override
+	public void close() {
+		if (!open) {
+			return;
+		}
+		
+		open = false;
+		
+		try {
+			server.close();
+		} catch (final Exception ex) {
+			//...
+		}
+	}
+	
+	/**
+	 * Accepts the next incoming connection.
+	 * Only one accept may be pending at a time.
+	 * @return A future which is completed with the connection
+	 */
+	public CompletableFuture<AsyncTCPConnection> accept() {
+		final CompletableFuture<AsyncTCPConnection> future = new CompletableFuture<AsyncTCPConnection>();
+		
+		try {
+			server.accept(null, new CompletionHandler<AsynchronousSocketChannel, Void>() {
+				@Override
+				public void completed(final AsynchronousSocketChannel channel, final Void attachment) {
+					future.complete(new AsyncTCPConnection(channel));
+				}
+				
+				@Override
+				public void failed(final Throwable t, final Void attachment) {
+					future.completeExceptionally(t);
+				}
+			});
+		} catch (final RuntimeException ex) {
+			future.completeExceptionally(ex);
+		}
+		
+		return future;
+	}
+	
+	/**
+	 * Returns the local port the server is bound to.
+	 * @return The port or -1 if the server is not open
+	 */
+	public final int getPort() {
+		try {
+			return ((InetSocketAddress)server.getLocalAddress()).getPort();
+		} catch (final IOException | NullPointerException ex) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Returns true if the server is open and can accept connections, false otherwise.
+	 * @return The state
+	 */
+	@Override
+	public final boolean isOpen() {
+		return open;
+	}
+	
+}
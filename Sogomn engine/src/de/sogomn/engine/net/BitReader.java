@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+/**
+ * Reads bits and bit-packed values written by a BitWriter.
+ * @author Sogomn
+ *
+ */
+public final class BitReader {
+	
+	private byte[] data;
+	private int bitPosition, bitLength;
+	
+	private static final int LENGTH_BITS = 6;
+	
+	/**
+	 * Constructs a new BitReader object which reads from the given data.
+	 * @param data The data
+	 */
+	public BitReader(final byte[] data) {
+		this.data = data;
+		
+		bitLength = data.length << 3;
+	}
+	
+	/**
+	 * Reads the given amount of bits.
+	 * @param bits The amount of bits to read (0 to 32)
+	 * @return The value
+	 * @throws IllegalStateException If there are not enough bits left or the bit count is invalid
+	 */
+	public int readBits(final int bits) {
+		if (bits < 0 || bits > Integer.SIZE) {
+			throw new IllegalStateException("Invalid bit count " + bits);
+		} else if (bitPosition + bits > bitLength) {
+			throw new IllegalStateException("Not enough bits left");
+		}
+		
+		int value = 0;
+		
+		for (int i = 0; i < bits; i++) {
+			final int index = bitPosition >>> 3;
+			final int bit = (data[index] >>> (7 - (bitPosition & 7))) & 1;
+			
+			value = (value << 1) | bit;
+			bitPosition++;
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Reads a single bit.
+	 * @return True if the bit is set; false otherwise
+	 */
+	public boolean readBoolean() {
+		return readBits(1) != 0;
+	}
+	
+	/**
+	 * Reads an unsigned value written with "writePacked".
+	 * @return The value
+	 */
+	public int readPacked() {
+		final int bits = readBits(LENGTH_BITS);
+		
+		return readBits(bits);
+	}
+	
+	/**
+	 * Reads a signed value written with "writeSignedPacked".
+	 * @return The value
+	 */
+	public int readSignedPacked() {
+		final int zigZag = readPacked();
+		
+		return (zigZag >>> 1) ^ -(zigZag & 1);
+	}
+	
+	/**
+	 * Returns the amount of bits left to read.
+	 * @return The remaining bits
+	 */
+	public int remaining() {
+		return bitLength - bitPosition;
+	}
+	
+}
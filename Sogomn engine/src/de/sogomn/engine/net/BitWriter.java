@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.util.Arrays;
+
+/**
+ * Writes single bits and bit-packed values to a growing byte array.
+ * Bits are written from the most significant to the least significant one.
+ * The writer can be reused by calling "reset".
+ * @author Sogomn
+ *
+ */
+public final class BitWriter {
+	
+	private byte[] data;
+	private int bitPosition;
+	
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final int LENGTH_BITS = 6;
+	
+	/**
+	 * Constructs a new BitWriter object with the given initial capacity in bytes.
+	 * @param capacity The initial capacity
+	 */
+	public BitWriter(final int capacity) {
+		data = new byte[Math.max(capacity, 1)];
+	}
+	
+	/**
+	 * Constructs a new BitWriter object with a default initial capacity.
+	 */
+	public BitWriter() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	private void ensureCapacity(final int bits) {
+		final int required = (bitPosition + bits + 7) >>> 3;
+		
+		if (required > data.length) {
+			data = Arrays.copyOf(data, Math.max(required, data.length * 2));
+		}
+	}
+	
+	/**
+	 * Writes the lowest bits of the given value.
+	 * @param value The value
+	 * @param bits The amount of bits to write (0 to 32)
+	 * @throws IllegalArgumentException If the amount of bits is out of range
+	 */
+	public void writeBits(final int value, final int bits) {
+		if (bits < 0 || bits > Integer.SIZE) {
+			throw new IllegalArgumentException("Invalid bit count " + bits);
+		}
+		
+		ensureCapacity(bits);
+		
+		for (int i = bits - 1; i >= 0; i--) {
+			final int bit = (value >>> i) & 1;
+			final int index = bitPosition >>> 3;
+			
+			if (bit != 0) {
+				data[index] |= 0x80 >>> (bitPosition & 7);
+			}
+			
+			bitPosition++;
+		}
+	}
+	
+	/**
+	 * Writes a single bit.
+	 * @param bit The bit
+	 */
+	public void writeBoolean(final boolean bit) {
+		writeBits(bit ? 1 : 0, 1);
+	}
+	
+	/**
+	 * Writes an unsigned value with as few bits as possible.
+	 * The amount of significant bits is written first, followed by the bits themselves.
+	 * @param value The value, interpreted as unsigned
+	 */
+	public void writePacked(final int value) {
+		final int bits = Integer.SIZE - Integer.numberOfLeadingZeros(value);
+		
+		writeBits(bits, LENGTH_BITS);
+		writeBits(value, bits);
+	}
+	
+	/**
+	 * Writes a signed value with as few bits as possible.
+	 * Small negative and positive values both take up only a few bits.
+	 * @param value The value
+	 */
+	public void writeSignedPacked(final int value) {
+		final int zigZag = (value << 1) ^ (value >> 31);
+		
+		writePacked(zigZag);
+	}
+	
+	/**
+	 * Resets the writer so it can be reused.
+	 */
+	public void reset() {
+		Arrays.fill(data, 0, (bitPosition + 7) >>> 3, (byte)0);
+		
+		bitPosition = 0;
+	}
+	
+	/**
+	 * Returns a copy of the written bytes.
+	 * The last byte is padded with zeros.
+	 * @return The written data
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(data, getByteCount());
+	}
+	
+	/**
+	 * Returns the amount of bits written.
+	 * @return The bit count
+	 */
+	public int getBitCount() {
+		return bitPosition;
+	}
+	
+	/**
+	 * Returns the amount of bytes needed to hold the written bits.
+	 * @return The byte count
+	 */
+	public int getByteCount() {
+		return (bitPosition + 7) >>> 3;
+	}
+	
+}
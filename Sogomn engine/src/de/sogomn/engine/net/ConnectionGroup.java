@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import de.sogomn.engine.net.OutboundQueue.OverflowPolicy;
+
+/**
+ * A group of connections which can be used to broadcast data from the server to many clients.
+ * Broadcast data is encoded only once into a shared read-only frame which is then queued on every connection.
+ * The queued frames are sent by the writer threads of the connections.
+ * Closed connections are removed from the group automatically.
+ * @author Sogomn
+ *
+ */
+public final class ConnectionGroup {
+	
+	private CopyOnWriteArrayList<TCPConnection> connections;
+	
+	private int sizeHint;
+	
+	private static final int FRAME_HEADER_SIZE = Integer.BYTES;
+	private static final int DEFAULT_SIZE_HINT = 256;
+	
+	/**
+	 * Constructs a new, empty ConnectionGroup object.
+	 */
+	public ConnectionGroup() {
+		connections = new CopyOnWriteArrayList<TCPConnection>();
+		sizeHint = DEFAULT_SIZE_HINT;
+	}
+	
+	/**
+	 * Encodes the given data as a frame.
+	 * @param data The data
+	 * @return A read-only frame which can be queued on any connection
+	 */
+	public static ByteBuffer encodeFrame(final byte[] data) {
+		final ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + data.length);
+		
+		frame.putInt(data.length);
+		frame.put(data);
+		frame.flip();
+		
+		return frame.asReadOnlyBuffer();
+	}
+	
+	/**
+	 * Encodes the given message as a frame.
+	 * @param codec The codec
+	 * @param message The message
+	 * @param sizeHint The expected size of the encoded message; the buffer grows if it is too small
+	 * @return A read-only frame which can be queued on any connection
+	 */
+	public static ByteBuffer encodeFrame(final MessageCodec codec, final Object message, final int sizeHint) {
+		int capacity = FRAME_HEADER_SIZE + Math.max(sizeHint, 1);
+		
+		while (true) {
+			final ByteBuffer frame = ByteBuffer.allocate(capacity);
+			
+			frame.position(FRAME_HEADER_SIZE);
+			
+			try {
+				codec.encode(message, frame);
+			} catch (final BufferOverflowException ex) {
+				capacity *= 2;
+				
+				continue;
+			}
+			
+			frame.putInt(0, frame.position() - FRAME_HEADER_SIZE);
+			frame.flip();
+			
+			return frame.asReadOnlyBuffer();
+		}
+	}
+	
+	/**
+	 * Queues the frame on every open connection of the group, applying the given overflow policy.
+	 * @param frame The frame
+	 * @param policy The overflow policy
+	 */
+	public void broadcast(final ByteBuffer frame, final OverflowPolicy policy) {
+		for (final TCPConnection connection : connections) {
+			if (connection.isOpen()) {
+				connection.enqueue(frame, policy);
+			} else {
+				connections.remove(connection);
+			}
+		}
+	}
+	
+	/**
+	 * Queues the frame on every open connection of the group, dropping the oldest droppable frames of full queues.
+	 * A slow receiver therefore never blocks the broadcasting thread.
+	 * @param frame The frame
+	 */
+	public void broadcast(final ByteBuffer frame) {
+		broadcast(frame, OverflowPolicy.DROP_OLDEST);
+	}
+	
+	/**
+	 * Encodes the data once and queues it on every open connection of the group.
+	 * @param data The data
+	 */
+	public void broadcast(final byte[] data) {
+		final ByteBuffer frame = encodeFrame(data);
+		
+		broadcast(frame);
+	}
+	
+	/**
+	 * Encodes the message once and queues it on every open connection of the group.
+	 * @param codec The codec
+	 * @param message The message
+	 */
+	public void broadcast(final MessageCodec codec, final Object message) {
+		final ByteBuffer frame = encodeFrame(codec, message, sizeHint);
+		
+		sizeHint = Math.max(frame.remaining() - FRAME_HEADER_SIZE, DEFAULT_SIZE_HINT);
+		
+		broadcast(frame);
+	}
+	
+	/**
+	 * Performs the given action for every open connection of the group.
+	 * @param action The action
+	 */
+	public void forEach(final Consumer<TCPConnection> action) {
+		for (final TCPConnection connection : connections) {
+			if (connection.isOpen()) {
+				action.accept(connection);
+			} else {
+				connections.remove(connection);
+			}
+		}
+	}
+	
+	/**
+	 * Returns a snapshot of the statistics of every open connection of the group.
+	 * @return The statistics
+	 */
+	public List<ConnectionStats> getStats() {
+		final ArrayList<ConnectionStats> stats = new ArrayList<ConnectionStats>(connections.size());
+		
+		forEach(connection -> stats.add(connection.getStats()));
+		
+		return stats;
+	}
+	
+	/**
+	 * Adds a connection to the group.
+	 * @param connection The connection
+	 */
+	public void add(final TCPConnection connection) {
+		connections.addIfAbsent(connection);
+	}
+	
+	/**
+	 * Removes a connection from the group.
+	 * @param connection The connection
+	 */
+	public void remove(final TCPConnection connection) {
+		connections.remove(connection);
+	}
+	
+	/**
+	 * Closes all connections of the group and removes them.
+	 */
+	public void close() {
+		for (final TCPConnection connection : connections) {
+			connection.close();
+		}
+		
+		connections.clear();
+	}
+	
+	/**
+	 * Returns the amount of connections in the group.
+	 * @return The size
+	 */
+	public int size() {
+		return connections.size();
+	}
+	
+}
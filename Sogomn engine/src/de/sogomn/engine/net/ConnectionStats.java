@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+/**
+ * An immutable snapshot of the statistics of a TCPConnection.
+ * The transfer rates can be computed by comparing two snapshots of the same connection.
+ * @author Sogomn
+ *
+ */
+public final class ConnectionStats {
+	
+	private final String address;
+	private final int port;
+	private final long time;
+	
+	private final long bytesSent, bytesReceived;
+	private final long messagesSent, messagesReceived;
+	private final int queuedFrames, peakQueuedFrames;
+	private final long droppedFrames;
+	private final double roundTripTime, jitter, idleTime;
+	
+	private static final double NANOSECONDS_PER_SECOND = 1_000_000_000.0;
+	private static final double MILLISECONDS_PER_SECOND = 1000.0;
+	
+	ConnectionStats(final TCPConnection connection) {
+		address = connection.getAddress();
+		port = connection.getPort();
+		time = System.nanoTime();
+		bytesSent = connection.getBytesSent();
+		bytesReceived = connection.getBytesReceived();
+		messagesSent = connection.getMessagesSent();
+		messagesReceived = connection.getMessagesReceived();
+		queuedFrames = connection.getQueuedFrames();
+		peakQueuedFrames = connection.getPeakQueuedFrames();
+		droppedFrames = connection.getDroppedFrames();
+		roundTripTime = connection.getRoundTripTime();
+		jitter = connection.getJitter();
+		idleTime = connection.getIdleTime();
+	}
+	
+	private double getSecondsSince(final ConnectionStats previous) {
+		return (time - previous.time) / NANOSECONDS_PER_SECOND;
+	}
+	
+	/**
+	 * Returns the average amount of bytes sent per second since the given snapshot.
+	 * @param previous An earlier snapshot of the same connection
+	 * @return The send rate in bytes per second or zero if no time has passed
+	 */
+	public double getSendRate(final ConnectionStats previous) {
+		final double seconds = getSecondsSince(previous);
+		
+		return seconds > 0 ? (bytesSent - previous.bytesSent) / seconds : 0;
+	}
+	
+	/**
+	 * Returns the average amount of bytes received per second since the given snapshot.
+	 * @param previous An earlier snapshot of the same connection
+	 * @return The receive rate in bytes per second or zero if no time has passed
+	 */
+	public double getReceiveRate(final ConnectionStats previous) {
+		final double seconds = getSecondsSince(previous);
+		
+		return seconds > 0 ? (bytesReceived - previous.bytesReceived) / seconds : 0;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s:%d rtt %.1fms jitter %.1fms sent %d bytes (%d messages) received %d bytes (%d messages) queued %d (peak %d) dropped %d idle %.1fs",
+				address, port,
+				roundTripTime * MILLISECONDS_PER_SECOND, jitter * MILLISECONDS_PER_SECOND,
+				bytesSent, messagesSent, bytesReceived, messagesReceived,
+				queuedFrames, peakQueuedFrames, droppedFrames, idleTime);
+	}
+	
+	/**
+	 * Returns the remote host address.
+	 * @return The address
+	 */
+	public String getAddress() {
+		return address;
+	}
+	
+	/**
+	 * Returns the remote port.
+	 * @return The port
+	 */
+	public int getPort() {
+		return port;
+	}
+	
+	/**
+	 * Returns the time the snapshot has been taken at, as returned by System.nanoTime.
+	 * @return The time in nanoseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+	
+	/**
+	 * Returns the amount of bytes sent.
+	 * @return The byte count
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+	
+	/**
+	 * Returns the amount of bytes received.
+	 * @return The byte count
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+	
+	/**
+	 * Returns the amount of messages sent.
+	 * @return The message count
+	 */
+	public long getMessagesSent() {
+		return messagesSent;
+	}
+	
+	/**
+	 * Returns the amount of messages received.
+	 * @return The message count
+	 */
+	public long getMessagesReceived() {
+		return messagesReceived;
+	}
+	
+	/**
+	 * Returns the number of frames that have been waiting to be sent.
+	 * @return The queue depth
+	 */
+	public int getQueuedFrames() {
+		return queuedFrames;
+	}
+	
+	/**
+	 * Returns the highest number of frames that have been waiting to be sent at once.
+	 * @return The peak queue depth
+	 */
+	public int getPeakQueuedFrames() {
+		return peakQueuedFrames;
+	}
+	
+	/**
+	 * Returns the number of frames that have been dropped because the queue was full.
+	 * @return The dropped frame count
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames;
+	}
+	
+	/**
+	 * Returns the smoothed round trip time.
+	 * @return The round trip time in seconds or NaN if no ping has been answered yet
+	 */
+	public double getRoundTripTime() {
+		return roundTripTime;
+	}
+	
+	/**
+	 * Returns the smoothed mean deviation of the round trip time.
+	 * @return The jitter in seconds or NaN if no ping has been answered yet
+	 */
+	public double getJitter() {
+		return jitter;
+	}
+	
+	/**
+	 * Returns the time since the last byte had been received.
+	 * @return The idle time in seconds
+	 */
+	public double getIdleTime() {
+		return idleTime;
+	}
+	
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * This class creates preset dictionaries for the frame compression of the TCPConnection class.
+ * A dictionary holds byte sequences which are common in the sample messages, so that short messages of the same type
+ * compress well even though they contain little redundancy themselves.
+ * Training is meant to be done once (e.g. at build time or startup); the result has to be known to both sides.
+ * @author Sogomn
+ *
+ */
+public final class DictionaryTrainer {
+	
+	private static final int SEGMENT_LENGTH = 8;
+	private static final int MIN_OCCURRENCES = 2;
+	
+	private DictionaryTrainer() {
+		//...
+	}
+	
+	private static long pack(final byte[] data, final int offset) {
+		long segment = 0;
+		
+		for (int i = 0; i < SEGMENT_LENGTH; i++) {
+			segment = (segment << Byte.SIZE) | (data[offset + i] & 0xff);
+		}
+		
+		return segment;
+	}
+	
+	/**
+	 * Creates a dictionary from the given sample messages.
+	 * The segments which occur in the most samples are placed at the end of the dictionary, where they are cheapest to reference.
+	 * Segments overlapping an already chosen segment at their first occurrence are skipped, so shifted copies of the same
+	 * byte sequence do not fill the dictionary.
+	 * @param samples Typical messages, e.g. encoded by a MessageCodec
+	 * @param size The maximum size of the dictionary in bytes; 32 KiB is the largest useful size
+	 * @return The dictionary, possibly shorter than the given size
+	 */
+	public static byte[] train(final Collection<byte[]> samples, final int size) {
+		final HashMap<Long, int[]> counts = new HashMap<Long, int[]>();
+		final HashSet<Long> seen = new HashSet<Long>();
+		
+		int sampleIndex = 0;
+		
+		for (final byte[] sample : samples) {
+			seen.clear();
+			
+			for (int i = 0; i + SEGMENT_LENGTH <= sample.length; i++) {
+				final long segment = pack(sample, i);
+				
+				if (!seen.add(segment)) {
+					continue;
+				}
+				
+				final int[] count = counts.get(segment);
+				
+				if (count == null) {
+					counts.put(segment, new int[] {1, sampleIndex, i});
+				} else {
+					count[0]++;
+				}
+			}
+			
+			sampleIndex++;
+		}
+		
+		final ArrayList<Long> segments = new ArrayList<Long>();
+		
+		counts.forEach((segment, count) -> {
+			if (count[0] >= MIN_OCCURRENCES) {
+				segments.add(segment);
+			}
+		});
+		
+		/*Equally common segments keep the order of their first occurrence, so they tile the sample without gaps*/
+		segments.sort((a, b) -> {
+			final int[] countA = counts.get(a);
+			final int[] countB = counts.get(b);
+			
+			for (int i = 0; i < countA.length; i++) {
+				final int compare = i == 0 ? Integer.compare(countB[i], countA[i]) : Integer.compare(countA[i], countB[i]);
+				
+				if (compare != 0) {
+					return compare;
+				}
+			}
+			
+			return 0;
+		});
+		
+		final int maxSegments = Math.max(size, 0) / SEGMENT_LENGTH;
+		final ArrayList<Long> chosen = new ArrayList<Long>();
+		final HashMap<Integer, BitSet> covered = new HashMap<Integer, BitSet>();
+		
+		for (int i = 0; i < segments.size() && chosen.size() < maxSegments; i++) {
+			final long segment = segments.get(i);
+			final int[] count = counts.get(segment);
+			final BitSet bytes = covered.computeIfAbsent(count[1], key -> new BitSet());
+			final int offset = count[2];
+			final int next = bytes.nextSetBit(offset);
+			
+			if (next == -1 || next >= offset + SEGMENT_LENGTH) {
+				bytes.set(offset, offset + SEGMENT_LENGTH);
+				chosen.add(segment);
+			}
+		}
+		
+		final int segmentCount = chosen.size();
+		final byte[] dictionary = new byte[segmentCount * SEGMENT_LENGTH];
+		
+		for (int i = 0; i < segmentCount; i++) {
+			final long segment = chosen.get(i);
+			final int offset = dictionary.length - (i + 1) * SEGMENT_LENGTH;
+			
+			for (int j = 0; j < SEGMENT_LENGTH; j++) {
+				dictionary[offset + j] = (byte)(segment >>> ((SEGMENT_LENGTH - 1 - j) * Byte.SIZE));
+			}
+		}
+		
+		return dictionary;
+	}
+	
+}
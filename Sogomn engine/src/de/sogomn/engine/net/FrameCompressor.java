@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses frames with reusable Deflater and Inflater instances.
+ * Both sides of a connection have to use the same preset dictionary.
+ * The settings can be changed from any thread; compressing and decompressing are not thread-safe.
+ * @author Sogomn
+ *
+ */
+final class FrameCompressor {
+	
+	private Deflater deflater;
+	private Inflater inflater;
+	private volatile byte[] dictionary;
+	private volatile int level;
+	private volatile int threshold;
+	private int appliedLevel;
+	private boolean ended;
+	
+	private byte[] output, input;
+	
+	public FrameCompressor() {
+		level = Deflater.DEFAULT_COMPRESSION;
+		threshold = TCPConnection.NO_COMPRESSION;
+	}
+	
+	boolean shouldCompress(final int length) {
+		return threshold != TCPConnection.NO_COMPRESSION && length >= threshold;
+	}
+	
+	/**
+	 * Compresses the data into the output buffer.
+	 * Returns the compressed length or -1 if the compressed data would not be smaller than the original.
+	 */
+	int deflate(final byte[] data, final int offset, final int length) {
+		final Deflater deflater = getDeflater();
+		final int level = this.level;
+		
+		if (appliedLevel != level) {
+			deflater.setLevel(level);
+			appliedLevel = level;
+		}
+		
+		if (output == null || output.length < length) {
+			output = new byte[length];
+		}
+		
+		deflater.reset();
+		
+		if (dictionary != null) {
+			deflater.setDictionary(dictionary);
+		}
+		
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		
+		int position = 0;
+		
+		while (!deflater.finished() && position < length) {
+			position += deflater.deflate(output, position, length - position);
+		}
+		
+		return deflater.finished() ? position : -1;
+	}
+	
+	/**
+	 * Decompresses the first "inputLength" bytes of the given array into the target.
+	 * The decompressed data has to be exactly "length" bytes long.
+	 */
+	void inflate(final byte[] data, final int inputLength, final byte[] target, final int offset, final int length) throws IOException {
+		final Inflater inflater = getInflater();
+		
+		inflater.reset();
+		inflater.setInput(data, 0, inputLength);
+		
+		int position = 0;
+		
+		try {
+			while (position < length) {
+				final int inflated = inflater.inflate(target, offset + position, length - position);
+				
+				position += inflated;
+				
+				if (inflated > 0) {
+					continue;
+				} else if (inflater.needsDictionary()) {
+					if (dictionary == null) {
+						throw new IOException("Missing compression dictionary");
+					}
+					
+					inflater.setDictionary(dictionary);
+				} else if (inflater.finished() || inflater.needsInput()) {
+					break;
+				}
+			}
+		} catch (final DataFormatException | IllegalArgumentException ex) {
+			throw new IOException("Corrupt compressed frame", ex);
+		}
+		
+		if (position != length) {
+			throw new IOException("Corrupt compressed frame");
+		}
+	}
+	
+	/*
+	 * Creating the native instances and ending them is synchronized, so no instance gets created after "end".
+	 */
+	private synchronized Deflater getDeflater() {
+		if (ended) {
+			throw new IllegalStateException("Compressor has been ended");
+		} else if (deflater == null) {
+			deflater = new Deflater(level);
+			appliedLevel = level;
+		}
+		
+		return deflater;
+	}
+	
+	private synchronized Inflater getInflater() {
+		if (ended) {
+			throw new IllegalStateException("Compressor has been ended");
+		} else if (inflater == null) {
+			inflater = new Inflater();
+		}
+		
+		return inflater;
+	}
+	
+	/**
+	 * Returns the compressed data written by "deflate".
+	 */
+	byte[] getOutput() {
+		return output;
+	}
+	
+	/**
+	 * Returns a reusable buffer for compressed data of the given length.
+	 */
+	byte[] getInput(final int length) {
+		if (input == null || input.length < length) {
+			input = new byte[length];
+		}
+		
+		return input;
+	}
+	
+	/**
+	 * Releases the native resources. Compressing or decompressing afterwards throws an IllegalStateException.
+	 */
+	synchronized void end() {
+		ended = true;
+		
+		if (deflater != null) {
+			deflater.end();
+			deflater = null;
+		}
+		
+		if (inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+	}
+	
+	void setDictionary(final byte[] dictionary) {
+		this.dictionary = dictionary == null ? null : dictionary.clone();
+	}
+	
+	/**
+	 * The level is applied with the next call of "deflate", so it can be changed from any thread.
+	 * It is validated here so an invalid level fails on the calling thread and not on the writing one.
+	 */
+	void setLevel(final int level) {
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+		
+		this.level = level;
+	}
+	
+	void setThreshold(final int threshold) {
+		this.threshold = threshold;
+	}
+	
+	int getThreshold() {
+		return threshold;
+	}
+	
+}
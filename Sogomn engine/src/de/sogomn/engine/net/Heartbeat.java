@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.io.IOException;
+
+import de.sogomn.engine.IUpdatable;
+
+/**
+ * Pings all connections of a group in a fixed interval and closes the ones which have not received anything for too long.
+ * The pings are answered by the reading thread of the other side, so both sides have to read frames or messages continuously.
+ * Can be registered on a Clock.
+ * @author Sogomn
+ *
+ */
+public final class Heartbeat implements IUpdatable {
+	
+	private ConnectionGroup group;
+	private double interval, timeout;
+	private double timer;
+	
+	/**
+	 * Constructs a new Heartbeat object.
+	 * @param group The connections to ping
+	 * @param interval The time between two pings in seconds
+	 * @param timeout The idle time in seconds after which a connection gets closed; zero or less to never close connections
+	 */
+	public Heartbeat(final ConnectionGroup group, final double interval, final double timeout) {
+		this.group = group;
+		this.interval = interval;
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Sends the pings if the interval has passed.
+	 * @param delta The time passed in seconds
+	 */
+	@Override
+	public void update(final double delta) {
+		timer += delta;
+		
+		if (timer < interval) {
+			return;
+		}
+		
+		timer = 0;
+		
+		group.forEach(connection -> {
+			if (timeout > 0 && connection.getIdleTime() > timeout) {
+				connection.handleException(new IOException("Heartbeat timed out"));
+			} else {
+				connection.ping();
+			}
+		});
+	}
+	
+	/**
+	 * Sets the time between two pings.
+	 * @param interval The interval in seconds
+	 */
+	public void setInterval(final double interval) {
+		this.interval = interval;
+	}
+	
+	/**
+	 * Sets the idle time after which a connection gets closed.
+	 * @param timeout The timeout in seconds; zero or less to never close connections
+	 */
+	public void setTimeout(final double timeout) {
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Returns the time between two pings.
+	 * @return The interval in seconds
+	 */
+	public double getInterval() {
+		return interval;
+	}
+	
+	/**
+	 * Returns the idle time after which a connection gets closed.
+	 * @return The timeout in seconds
+	 */
+	public double getTimeout() {
+		return timeout;
+	}
+	
+}
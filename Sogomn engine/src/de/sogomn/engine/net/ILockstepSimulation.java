@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+/**
+ * Defines an interface for deterministic simulations driven by a LockstepClient.
+ * Every client has to produce exactly the same state from the same inputs. This means no wall time,
+ * no unseeded random numbers (see LockstepClient.getSeed) and no iteration over unordered collections.
+ * @author Sogomn
+ *
+ */
+public interface ILockstepSimulation {
+	
+	/**
+	 * Advances the simulation by one turn.
+	 * @param turn The turn number
+	 * @param inputs The commands of every player for this turn, indexed by player id; empty if a player did nothing
+	 */
+	void step(final int turn, final byte[][] inputs);
+	
+	/**
+	 * Returns a checksum of the current state which is compared between all clients to detect desynchronization.
+	 * @return The checksum
+	 */
+	int checksum();
+	
+}
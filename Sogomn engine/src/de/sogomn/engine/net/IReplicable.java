@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+/**
+ * Defines an interface for objects whose state can be replicated by a Replicator.
+ * The state consists of a fixed amount of integer fields.
+ * Floating point values should be quantized (e.g. to hundredths) so that small changes result in small deltas.
+ * @author Sogomn
+ *
+ */
+public interface IReplicable {
+	
+	/**
+	 * Returns the amount of replicated fields.
+	 * @return The field count
+	 */
+	int getFieldCount();
+	
+	/**
+	 * Returns the value of the field with the given index.
+	 * @param index The field index
+	 * @return The value
+	 */
+	int getField(final int index);
+	
+	/**
+	 * Sets the value of the field with the given index.
+	 * Called on the receiving side when a new state arrives.
+	 * @param index The field index
+	 * @param value The new value
+	 */
+	void setField(final int index, final int value);
+	
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+/**
+ * Listener interface for the ReplicationReceiver class.
+ * @author Sogomn
+ *
+ */
+public interface IReplicationListener {
+	
+	/**
+	 * Called when a replicated entity has been created.
+	 * @param id The entity id
+	 * @param entity The entity
+	 */
+	void created(final int id, final IReplicable entity);
+	
+	/**
+	 * Called when a replicated entity has been removed.
+	 * @param id The entity id
+	 * @param entity The entity
+	 */
+	void removed(final int id, final IReplicable entity);
+	
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+import de.sogomn.engine.fx.Camera;
+
+/**
+ * The area of interest of one client.
+ * Holds the set of entities the client can see, which is recomputed from an InterestGrid every tick.
+ * Can be passed to the method "setFilter" of a Replicator client so only nearby entities are replicated.
+ * This class is not thread-safe.
+ * @author Sogomn
+ *
+ */
+public final class InterestArea implements IntPredicate {
+	
+	private double x, y;
+	private double width, height;
+	private double margin;
+	
+	private int[] visible;
+	private int size;
+	
+	private static final int DEFAULT_CAPACITY = 64;
+	
+	/**
+	 * Constructs a new InterestArea object with the given view size.
+	 * @param width The view width
+	 * @param height The view height
+	 * @param margin The extra distance around the view (e.g. to hide popping)
+	 */
+	public InterestArea(final double width, final double height, final double margin) {
+		this.width = width;
+		this.height = height;
+		this.margin = margin;
+		
+		visible = new int[DEFAULT_CAPACITY];
+	}
+	
+	private void add(final int id) {
+		if (size == visible.length) {
+			visible = Arrays.copyOf(visible, size * 2);
+		}
+		
+		visible[size++] = id;
+	}
+	
+	/**
+	 * Recomputes the visible entities.
+	 * @param grid The grid holding the entity positions
+	 */
+	public void update(final InterestGrid grid) {
+		size = 0;
+		
+		grid.query(x - margin, y - margin, x + width + margin, y + height + margin, this::add);
+		Arrays.sort(visible, 0, size);
+	}
+	
+	/**
+	 * Returns whether the entity with the given id was visible during the last update.
+	 */
+	@Override
+	public boolean test(final int id) {
+		return Arrays.binarySearch(visible, 0, size, id) >= 0;
+	}
+	
+	/**
+	 * Sets the position of the view (the upper left corner).
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 */
+	public void setPosition(final double x, final double y) {
+		this.x = x;
+		this.y = y;
+	}
+	
+	/**
+	 * Sets the position of the view to the position of the camera.
+	 * @param camera The camera
+	 */
+	public void setPosition(final Camera camera) {
+		setPosition(camera.getX(), camera.getY());
+	}
+	
+	/**
+	 * Sets the size of the view.
+	 * @param width The width
+	 * @param height The height
+	 */
+	public void setSize(final double width, final double height) {
+		this.width = width;
+		this.height = height;
+	}
+	
+	/**
+	 * Sets the extra distance around the view.
+	 * @param margin The margin
+	 */
+	public void setMargin(final double margin) {
+		this.margin = margin;
+	}
+	
+	/**
+	 * Returns the amount of entities visible during the last update.
+	 * @return The count
+	 */
+	public int getVisibleCount() {
+		return size;
+	}
+	
+}
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.util.HashMap;
+import java.util.function.IntConsumer;
+
+import de.sogomn.engine.fx.Camera;
+
+/**
+ * A uniform spatial hash of entity positions used for area of interest filtering.
+ * Entities are identified by their ids and stored in square cells which are keyed by their packed cell coordinates.
+ * The coordinates are world coordinates, the same ones the Camera class uses.
+ * This class is not thread-safe.
+ * @author Sogomn
+ *
+ */
+public final class InterestGrid {
+	
+	private double cellSize;
+	private HashMap<Long, Cell> cells;
+	private HashMap<Integer, Position> positions;
+	
+	/**
+	 * Constructs a new InterestGrid object with the given cell size.
+	 * The cell size should be in the order of the view distance.
+	 * @param cellSize The width and height of one cell in world units
+	 */
+	public InterestGrid(final double cellSize) {
+		if (cellSize <= 0) {
+			throw new IllegalArgumentException("Cell size must be positive");
+		}
+		
+		this.cellSize = cellSize;
+		
+		cells = new HashMap<Long, Cell>();
+		positions = new HashMap<Integer, Position>();
+	}
+	
+	private int toCell(final double coordinate) {
+		return (int)Math.floor(coordinate / cellSize);
+	}
+	
+	private void addToCell(final long key, final int id) {
+		Cell cell = cells.get(key);
+		
+		if (cell == null) {
+			cell = new Cell();
+			cells.put(key, cell);
+		}
+		
+		cell.add(id);
+	}
+	
+	private void removeFromCell(final long key, final int id) {
+		final Cell cell = cells.get(key);
+		
+		if (cell != null && cell.remove(id) && cell.size == 0) {
+			cells.remove(key);
+		}
+	}
+	
+	/**
+	 * Sets the position of the entity with the given id. Adds the entity if it is not in the grid yet.
+	 * @param id The entity id
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 */
+	public void update(final int id, final double x, final double y) {
+		final long key = packCell(toCell(x), toCell(y));
+		
+		Position position = positions.get(id);
+		
+		if (position == null) {
+			position = new Position();
+			position.key = key;
+			positions.put(id, position);
+			addToCell(key, id);
+		} else if (position.key != key) {
+			removeFromCell(position.key, id);
+			addToCell(key, id);
+			position.key = key;
+		}
+		
+		position.x = x;
+		position.y = y;
+	}
+	
+	/**
+	 * Removes the entity with the given id from the grid.
+	 * @param id The entity id
+	 */
+	public void remove(final int id) {
+		final Position position = positions.remove(id);
+		
+		if (position != null) {
+			removeFromCell(position.key, id);
+		}
+	}
+	
+	/**
+	 * Removes all entities from the grid.
+	 */
+	public void clear() {
+		cells.clear();
+		positions.clear();
+	}
+	
+	/**
+	 * Passes the id of every entity inside the given rectangle (inclusive) to the consumer.
+	 * Only the cells overlapping the rectangle are visited.
+	 * @param minX The minimum x coordinate
+	 * @param minY The minimum y coordinate
+	 * @param maxX The maximum x coordinate
+	 * @param maxY The maximum y coordinate
+	 * @param consumer The consumer
+	 */
+	public void query(final double minX, final double minY, final double maxX, final double maxY, final IntConsumer consumer) {
+		final int minCellX = toCell(minX);
+		final int minCellY = toCell(minY);
+		final int maxCellX = toCell(maxX);
+		final int maxCellY = toCell(maxY);
+		
+		for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+			for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+				final Cell cell = cells.get(packCell(cellX, cellY));
+				
+				if (cell == null) {
+					continue;
+				}
+				
+				for (int i = 0; i < cell.size; i++) {
+					final int id = cell.ids[i];
+					final Position position = positions.get(id);
+					
+					if (position.x >= minX && position.x <= maxX && position.y >= minY && position.y <= maxY) {
+						consumer.accept(id);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Passes the id of every entity the given camera can see to the consumer.
+	 * Rotation and scale of the camera are ignored; they can be compensated with the margin.
+	 * @param camera The camera
+	 * @param width The view width
+	 * @param height The view height
+	 * @param margin The extra distance around the view
+	 * @param consumer The consumer
+	 */
+	public void query(final Camera camera, final double width, final double height, final double margin, final IntConsumer consumer) {
+		final double x = camera.getX();
+		final double y = camera.getY();
+		
+		query(x - margin, y - margin, x + width + margin, y + height + margin, consumer);
+	}
+	
+	/**
+	 * Returns whether the grid contains an entity with the given id.
+	 * @param id The entity id
+	 * @return The state
+	 */
+	public boolean contains(final int id) {
+		return positions.containsKey(id);
+	}
+	
+	/**
+	 * Returns the amount of entities in the grid.
+	 * @return The entity count
+	 */
+	public int size() {
+		return positions.size();
+	}
+	
+	/**
+	 * Returns the cell size.
+	 * @return The cell size
+	 */
+	public double getCellSize() {
+		return cellSize;
+	}
+	
+	/**
+	 * Packs the given cell coordinates into one long.
+	 * @param cellX The x coordinate of the cell
+	 * @param cellY The y coordinate of the cell
+	 * @return The key
+	 */
+	public static long packCell(final int cellX, final int cellY) {
+		return ((long)cellX << 32) | (cellY & 0xffffffffL);
+	}
+	
+	private static final class Position {
+		
+		private double x, y;
+		private long key;
+		
+	}
+	
+	private static final class Cell {
+		
+		private int[] ids;
+		private int size;
+		
+		private static final int DEFAULT_CAPACITY = 4;
+		
+		public Cell() {
+			ids = new int[DEFAULT_CAPACITY];
+		}
+		
+		public void add(final int id) {
+			if (size == ids.length) {
+				final int[] newIds = new int[size * 2];
+				
+				System.arraycopy(ids, 0, newIds, 0, size);
+				ids = newIds;
+			}
+			
+			ids[size++] = id;
+		}
+		
+		public boolean remove(final int id) {
+			for (int i = 0; i < size; i++) {
+				if (ids[i] == id) {
+					ids[i] = ids[--size];
+					
+					return true;
+				}
+			}
+			
+			return false;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,401 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process proxy which simulates a poor network link between two endpoints on the local machine.
+ * Clients connect to the port of the simulator instead of the target; the simulator forwards all data in both directions
+ * and delays it according to the configured latency, jitter, bandwidth and loss.
+ * Since TCP never drops data, a lost packet is simulated as a retransmission delay instead.
+ * Settings can be changed at any time and apply to both directions.
+ * Each direction holds at most the bandwidth-delay product plus a small queue in flight. Beyond that the simulator stops
+ * reading, so the sender feels the backpressure of a slow link like on a real network.
+ * @author Sogomn
+ *
+ */
+public final class LinkSimulator implements IClosable {
+	
+	private ServerSocket server;
+	private ArrayList<Socket> sockets;
+	private String targetAddress;
+	private int targetPort;
+	
+	private volatile double latency, jitter;
+	private volatile long bandwidth;
+	private volatile double loss;
+	private Random random;
+	
+	private volatile boolean open;
+	
+	private static final int CHUNK_SIZE = 1460;
+	private static final long QUEUE_SIZE = 64 * 1024;
+	private static final long MAX_UNLIMITED_IN_FLIGHT = 16 * 1024 * 1024;
+	private static final double MIN_RETRANSMISSION_DELAY = 0.2;
+	private static final double NANO_SECONDS_PER_SECOND = 1000000000.0;
+	
+	/**
+	 * Represents an unlimited bandwidth.
+	 */
+	public static final long UNLIMITED = 0;
+	
+	/**
+	 * Constructs a new LinkSimulator object listening on a free local port.
+	 * The target needs to be set before the first client connects.
+	 */
+	public LinkSimulator() {
+		sockets = new ArrayList<Socket>();
+		random = new Random();
+		
+		try {
+			server = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+			open = true;
+			
+			final Thread acceptor = new Thread(this::acceptConnections, "LinkSimulator acceptor");
+			
+			acceptor.setDaemon(true);
+			acceptor.start();
+		} catch (final IOException ex) {
+			handleException(ex);
+		}
+	}
+	
+	/**
+	 * Constructs a new LinkSimulator object listening on a free local port and forwarding to the given target.
+	 * @param targetAddress The target address
+	 * @param targetPort The target port
+	 */
+	public LinkSimulator(final String targetAddress, final int targetPort) {
+		this();
+		
+		setTarget(targetAddress, targetPort);
+	}
+	
+	/**
+	 * This method gets called when an exeption occurs. The default implementation prints the error.
+	 * @param ex The exception that has been thrown
+	 */
+	protected void handleException(final Exception ex) {
+		if (open) {
+			System.err.println("Link simulator error: " + ex.getMessage());
+		}
+	}
+	
+	private void acceptConnections() {
+		while (open) {
+			try {
+				final Socket client = server.accept();
+				final Socket target;
+				
+				try {
+					target = new Socket(targetAddress, targetPort);
+				} catch (final IOException ex) {
+					client.close();
+					
+					throw ex;
+				}
+				
+				client.setTcpNoDelay(true);
+				target.setTcpNoDelay(true);
+				
+				synchronized (sockets) {
+					sockets.add(client);
+					sockets.add(target);
+				}
+				
+				new Pipe(client, target).start();
+				new Pipe(target, client).start();
+			} catch (final IOException ex) {
+				handleException(ex);
+			}
+		}
+	}
+	
+	/*
+	 * The bandwidth-delay product plus the queue of the link
+	 */
+	private long getMaxInFlight() {
+		final long bandwidth = this.bandwidth;
+		
+		if (bandwidth == UNLIMITED) {
+			return MAX_UNLIMITED_IN_FLIGHT;
+		}
+		
+		return (long)(bandwidth * (latency + jitter)) + QUEUE_SIZE;
+	}
+	
+	private synchronized double nextDelay() {
+		final double jitterDelay = jitter * random.nextDouble();
+		final boolean lost = loss > 0 && random.nextDouble() < loss;
+		final double retransmissionDelay = lost ? Math.max(latency * 2, MIN_RETRANSMISSION_DELAY) : 0;
+		
+		return latency + jitterDelay + retransmissionDelay;
+	}
+	
+	/**
+	 * Stops the simulator and closes all forwarded connections.
+	 * This method does nothing if the simulator is not open.
+	 */
+	@Override
+	public void close() {
+		if (!open) {
+			return;
+		}
+		
+		open = false;
+		
+		try {
+			server.close();
+		} catch (final Exception ex) {
+			//...
+		}
+		
+		synchronized (sockets) {
+			for (final Socket socket : sockets) {
+				try {
+					socket.close();
+				} catch (final Exception ex) {
+					//...
+				}
+			}
+			
+			sockets.clear();
+		}
+	}
+	
+	/**
+	 * Sets the endpoint new clients get forwarded to.
+	 * @param targetAddress The target address
+	 * @param targetPort The target port
+	 */
+	public void setTarget(final String targetAddress, final int targetPort) {
+		this.targetAddress = targetAddress;
+		this.targetPort = targetPort;
+	}
+	
+	/**
+	 * Sets the one-way latency.
+	 * @param latency The latency in seconds
+	 */
+	public void setLatency(final double latency) {
+		this.latency = latency;
+	}
+	
+	/**
+	 * Sets the jitter. Every chunk gets delayed by a random amount between zero and the jitter in addition to the latency.
+	 * The order of the data is kept, so a delayed chunk delays all following chunks as well.
+	 * @param jitter The jitter in seconds
+	 */
+	public void setJitter(final double jitter) {
+		this.jitter = jitter;
+	}
+	
+	/**
+	 * Sets the bandwidth of each direction.
+	 * @param bandwidth The bandwidth in bytes per second or UNLIMITED
+	 */
+	public void setBandwidth(final long bandwidth) {
+		this.bandwidth = bandwidth;
+	}
+	
+	/**
+	 * Sets the probability of a chunk getting lost. A lost chunk gets delivered after a retransmission delay.
+	 * @param loss The probability from 0 to 1
+	 */
+	public void setLoss(final double loss) {
+		this.loss = loss;
+	}
+	
+	/**
+	 * Sets the seed for the random jitter and loss.
+	 * @param seed The seed
+	 */
+	public synchronized void setSeed(final long seed) {
+		random.setSeed(seed);
+	}
+	
+	/**
+	 * Returns the local port clients should connect to.
+	 * @return The port
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+	
+	/**
+	 * Returns true if the simulator is open, false otherwise.
+	 * @return The state
+	 */
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+	
+	private final class Pipe {
+		
+		private Socket source, destination;
+		private LinkedBlockingQueue<Chunk> chunks;
+		private long lastDelivery;
+		private long inFlight;
+		private boolean ended;
+		
+		public Pipe(final Socket source, final Socket destination) {
+			this.source = source;
+			this.destination = destination;
+			
+			chunks = new LinkedBlockingQueue<Chunk>();
+		}
+		
+		private void closeBoth() {
+			try {
+				source.close();
+			} catch (final IOException ex) {
+				//...
+			} try {
+				destination.close();
+			} catch (final IOException ex) {
+				//...
+			}
+			
+			synchronized (sockets) {
+				sockets.remove(source);
+				sockets.remove(destination);
+			}
+		}
+		
+		/*
+		 * Waits until the chunk fits into the link. A chunk is always accepted if nothing is in flight.
+		 */
+		private synchronized void acquire(final int bytes) throws InterruptedException {
+			while (!ended && inFlight > 0 && inFlight + bytes > getMaxInFlight()) {
+				wait();
+			}
+			
+			inFlight += bytes;
+		}
+		
+		private synchronized void release(final int bytes) {
+			inFlight -= bytes;
+			
+			notifyAll();
+		}
+		
+		private synchronized void end() {
+			ended = true;
+			
+			notifyAll();
+		}
+		
+		private void receive() {
+			final byte[] buffer = new byte[CHUNK_SIZE];
+			
+			try {
+				final InputStream in = source.getInputStream();
+				
+				int bytesRead = 0;
+				
+				while ((bytesRead = in.read(buffer)) != -1) {
+					acquire(bytesRead);
+					
+					final long now = System.nanoTime();
+					final long delay = (long)(nextDelay() * NANO_SECONDS_PER_SECOND);
+					final long transmission = bandwidth == UNLIMITED ? 0 : (long)(bytesRead * NANO_SECONDS_PER_SECOND / bandwidth);
+					final long delivery = Math.max(now + delay, lastDelivery) + transmission;
+					
+					lastDelivery = delivery;
+					chunks.put(new Chunk(Arrays.copyOf(buffer, bytesRead), delivery));
+				}
+			} catch (final IOException | InterruptedException ex) {
+				if (!source.isClosed()) {
+					handleException(ex);
+				}
+			}
+			
+			chunks.add(Chunk.END);
+		}
+		
+		private void deliver() {
+			try {
+				final OutputStream out = destination.getOutputStream();
+				
+				while (open) {
+					final Chunk chunk = chunks.poll(1, TimeUnit.SECONDS);
+					
+					if (chunk == null) {
+						continue;
+					} else if (chunk == Chunk.END) {
+						break;
+					}
+					
+					final long wait = chunk.delivery - System.nanoTime();
+					
+					if (wait > 0) {
+						TimeUnit.NANOSECONDS.sleep(wait);
+					}
+					
+					out.write(chunk.data);
+					out.flush();
+					release(chunk.data.length);
+				}
+			} catch (final IOException | InterruptedException ex) {
+				if (!destination.isClosed()) {
+					handleException(ex);
+				}
+			}
+			
+			end();
+			closeBoth();
+		}
+		
+		public void start() {
+			final Thread receiver = new Thread(this::receive, "LinkSimulator receiver");
+			final Thread deliverer = new Thread(this::deliver, "LinkSimulator deliverer");
+			
+			receiver.setDaemon(true);
+			deliverer.setDaemon(true);
+			receiver.start();
+			deliverer.start();
+		}
+		
+	}
+	
+	private static final class Chunk {
+		
+		private final byte[] data;
+		private final long delivery;
+		
+		private static final Chunk END = new Chunk(new byte[0], 0);
+		
+		public Chunk(final byte[] data, final long delivery) {
+			this.data = data;
+			this.delivery = delivery;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import de.sogomn.engine.IUpdatable;
+import de.sogomn.engine.util.AbstractListenerContainer;
+
+/**
+ * The client side of the deterministic lockstep mode.
+ * Commands submitted by the player are sent to the LockstepServer and executed by all clients a few turns later (the input delay).
+ * The "update" method has to be called regularly by the game loop. It executes one turn of the simulation per turn length
+ * as long as the commands of all players for that turn have arrived; otherwise the simulation waits.
+ * The turns are executed and the listeners are notified on the thread calling "update".
+ * @author Sogomn
+ *
+ */
+public final class LockstepClient extends AbstractListenerContainer<ILockstepListener> implements IUpdatable, IClosable {
+	
+	private TCPConnection connection;
+	private ILockstepSimulation simulation;
+	private ConcurrentLinkedQueue<Turn> turns;
+	private ByteArrayOutputStream pending;
+	
+	private volatile int playerId, playerCount, inputDelay;
+	private volatile double turnLength;
+	private volatile long seed;
+	private volatile boolean started;
+	private volatile int desyncTurn;
+	
+	private int turn;
+	private double timer;
+	private boolean desyncReported;
+	
+	/**
+	 * Constructs a new LockstepClient object and starts a thread which reads the turns from the server.
+	 * @param connection The connection to the LockstepServer
+	 * @param simulation The simulation
+	 */
+	public LockstepClient(final TCPConnection connection, final ILockstepSimulation simulation) {
+		this.connection = connection;
+		this.simulation = simulation;
+		
+		turns = new ConcurrentLinkedQueue<Turn>();
+		pending = new ByteArrayOutputStream();
+		playerId = -1;
+		desyncTurn = LockstepServer.NO_TURN;
+		
+		final Thread reader = new Thread(this::read, "LockstepClient reader");
+		
+		reader.setDaemon(true);
+		reader.start();
+	}
+	
+	private void read() {
+		while (connection.isOpen()) {
+			final byte[] frame = connection.readFrame();
+			
+			if (frame == null) {
+				break;
+			}
+			
+			final ByteBuffer buffer = ByteBuffer.wrap(frame);
+			
+			try {
+				final byte type = buffer.get();
+				
+				if (type == LockstepServer.START) {
+					receiveStart(buffer);
+				} else if (type == LockstepServer.TURN) {
+					turns.add(new Turn(buffer));
+				} else if (type == LockstepServer.DESYNC) {
+					desyncTurn = buffer.getInt();
+				} else {
+					throw new IllegalStateException("Unexpected message type: " + type);
+				}
+			} catch (final BufferUnderflowException | IllegalStateException ex) {
+				System.err.println("Invalid lockstep message: " + ex);
+				
+				connection.close();
+			}
+		}
+	}
+	
+	private void receiveStart(final ByteBuffer buffer) {
+		playerId = buffer.getInt();
+		playerCount = buffer.getInt();
+		inputDelay = buffer.getInt();
+		turnLength = buffer.getDouble();
+		seed = buffer.getLong();
+		
+		for (int i = 0; i < inputDelay; i++) {
+			sendInput(i, new byte[0]);
+		}
+		
+		started = true;
+	}
+	
+	private void sendInput(final int inputTurn, final byte[] command) {
+		final ByteBuffer buffer = ByteBuffer.allocate(Byte.BYTES + Integer.BYTES + command.length);
+		
+		buffer.put(LockstepServer.INPUT);
+		buffer.putInt(inputTurn);
+		buffer.put(command);
+		connection.writeFrame(buffer.array());
+	}
+	
+	private void sendChecksum(final int checksumTurn, final int checksum) {
+		final ByteBuffer buffer = ByteBuffer.allocate(Byte.BYTES + 2 * Integer.BYTES);
+		
+		buffer.put(LockstepServer.CHECKSUM);
+		buffer.putInt(checksumTurn);
+		buffer.putInt(checksum);
+		connection.writeFrame(buffer.array());
+	}
+	
+	private void execute(final Turn next) {
+		final byte[] command;
+		
+		synchronized (pending) {
+			command = pending.toByteArray();
+			
+			pending.reset();
+		}
+		
+		simulation.step(next.number, next.inputs);
+		sendChecksum(next.number, simulation.checksum());
+		sendInput(next.number + inputDelay, command);
+		
+		turn = next.number + 1;
+	}
+	
+	/**
+	 * Executes the turns which are due.
+	 * If the client has fallen behind (more turns have arrived than the input delay), it catches up by executing them at once.
+	 * @param delta The time passed in seconds
+	 */
+	@Override
+	public void update(final double delta) {
+		if (!started) {
+			return;
+		}
+		
+		timer += delta;
+		
+		while (timer >= turnLength || turns.size() > inputDelay) {
+			final Turn next = turns.poll();
+			
+			if (next == null) {
+				timer = Math.min(timer, turnLength);
+				
+				break;
+			}
+			
+			execute(next);
+			
+			timer = Math.max(timer - turnLength, 0);
+		}
+		
+		final int desync = desyncTurn;
+		
+		if (desync != LockstepServer.NO_TURN && !desyncReported) {
+			desyncReported = true;
+			
+			notifyListeners(listener -> listener.desynchronized(desync));
+		}
+	}
+	
+	/**
+	 * Submits a command of the local player. All commands submitted until the next turn is executed are sent together
+	 * and executed in the same turn. Several commands per turn are concatenated, so they have to be self-delimiting
+	 * (e.g. encoded by a MessageCodec).
+	 * @param command The command
+	 */
+	public void submit(final byte[] command) {
+		synchronized (pending) {
+			pending.write(command, 0, command.length);
+		}
+	}
+	
+	/**
+	 * Closes the connection to the server.
+	 */
+	@Override
+	public void close() {
+		connection.close();
+	}
+	
+	/**
+	 * Returns how far the time has advanced towards the next turn, e.g. for interpolated rendering.
+	 * @return The progress from 0 to 1
+	 */
+	public double getTurnProgress() {
+		return started ? Math.min(timer / turnLength, 1) : 0;
+	}
+	
+	/**
+	 * Returns the next turn to be executed.
+	 * @return The turn
+	 */
+	public int getTurn() {
+		return turn;
+	}
+	
+	/**
+	 * Returns the amount of turns which have been received but not executed yet.
+	 * @return The buffered turn count
+	 */
+	public int getBufferedTurns() {
+		return turns.size();
+	}
+	
+	/**
+	 * Returns the id of the local player.
+	 * @return The id or -1 if the game has not been started yet
+	 */
+	public int getPlayerId() {
+		return playerId;
+	}
+	
+	/**
+	 * Returns the amount of players.
+	 * @return The player count
+	 */
+	public int getPlayerCount() {
+		return playerCount;
+	}
+	
+	/**
+	 * Returns the duration of a turn. The simulation should use it as its fixed delta (see the Clock class).
+	 * @return The turn length in seconds
+	 */
+	public double getTurnLength() {
+		return turnLength;
+	}
+	
+	/**
+	 * Returns the seed chosen by the server. All random generators of the simulation have to be seeded with it.
+	 * @return The seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * Returns true if the game has been started by the server.
+	 * @return The state
+	 */
+	public boolean isStarted() {
+		return started;
+	}
+	
+	/**
+	 * Returns the first turn in which the clients desynchronized.
+	 * @return The turn or -1 if the clients are synchronized
+	 */
+	public int getDesyncTurn() {
+		return desyncTurn;
+	}
+	
+	/**
+	 * Returns true if the connection is open, false otherwise.
+	 * @return The state
+	 */
+	@Override
+	public boolean isOpen() {
+		return connection.isOpen();
+	}
+	
+	private static final class Turn {
+		
+		private final int number;
+		private final byte[][] inputs;
+		
+		public Turn(final ByteBuffer buffer) {
+			number = buffer.getInt();
+			
+			final int count = buffer.getInt();
+			
+			if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+				throw new IllegalStateException("Invalid player count: " + count);
+			}
+			
+			inputs = new byte[count][];
+			
+			for (int i = 0; i < count; i++) {
+				final int length = buffer.getInt();
+				
+				if (length < 0 || length > buffer.remaining()) {
+					throw new IllegalStateException("Invalid command length: " + length);
+				}
+				
+				inputs[i] = new byte[length];
+				
+				buffer.get(inputs[i]);
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import de.sogomn.engine.net.OutboundQueue.OverflowPolicy;
+import de.sogomn.engine.util.AbstractListenerContainer;
+
+/**
+ * The server side of the deterministic lockstep mode.
+ * The server does not simulate anything. It collects the input commands of all players for each turn
+ * and sends them to every client as soon as they are complete, so all clients execute the same commands in the same turns.
+ * The clients send a checksum of their state after each turn; differing checksums are reported as desynchronization.
+ * The bandwidth only depends on the amount of commands, not on the amount of simulated units.
+ * Disconnected players are treated as if they sent no commands.
+ * Every player has to send its commands and checksums for consecutive turns and may not run ahead of the input delay;
+ * otherwise it gets disconnected. The same happens to a player whose outbound queue overflows,
+ * because turns cannot be dropped and a slow player must not stall the others.
+ * @author Sogomn
+ *
+ */
+public final class LockstepServer extends AbstractListenerContainer<ILockstepListener> implements IClosable {
+	
+	private ArrayList<TCPConnection> players;
+	private ConnectionGroup group;
+	private double turnLength;
+	private int inputDelay;
+	private long seed;
+	
+	private HashMap<Integer, byte[][]> inputs;
+	private HashMap<Integer, int[]> checksums;
+	private boolean[] dropped;
+	private int[] inputTurns, checksumTurns;
+	private ConcurrentLinkedQueue<byte[]> outgoing;
+	private int nextTurn;
+	private int desyncTurn;
+	
+	private volatile boolean started, open;
+	
+	static final byte START = 0;
+	static final byte INPUT = 1;
+	static final byte CHECKSUM = 2;
+	static final byte TURN = 3;
+	static final byte DESYNC = 4;
+	
+	static final int NO_TURN = -1;
+	
+	private static final byte[] NO_INPUT = new byte[0];
+	
+	/**
+	 * Constructs a new LockstepServer object.
+	 * @param turnRate The amount of turns per second
+	 * @param inputDelay The amount of turns between issuing a command and executing it; at least one
+	 * @param seed The seed sent to all clients for their random generators
+	 */
+	public LockstepServer(final double turnRate, final int inputDelay, final long seed) {
+		if (inputDelay < 1) {
+			throw new IllegalArgumentException("Input delay must be at least one turn: " + inputDelay);
+		}
+		
+		this.inputDelay = inputDelay;
+		this.seed = seed;
+		
+		turnLength = 1 / turnRate;
+		players = new ArrayList<TCPConnection>();
+		group = new ConnectionGroup();
+		inputs = new HashMap<Integer, byte[][]>();
+		checksums = new HashMap<Integer, int[]>();
+		outgoing = new ConcurrentLinkedQueue<byte[]>();
+		desyncTurn = NO_TURN;
+		open = true;
+	}
+	
+	private static byte[] encodeStart(final int player, final int playerCount, final int inputDelay, final double turnLength, final long seed) {
+		final ByteBuffer buffer = ByteBuffer.allocate(Byte.BYTES + 3 * Integer.BYTES + Double.BYTES + Long.BYTES);
+		
+		buffer.put(START);
+		buffer.putInt(player);
+		buffer.putInt(playerCount);
+		buffer.putInt(inputDelay);
+		buffer.putDouble(turnLength);
+		buffer.putLong(seed);
+		
+		return buffer.array();
+	}
+	
+	private static byte[] encodeTurn(final int turn, final byte[][] commands) {
+		int size = Byte.BYTES + 2 * Integer.BYTES;
+		
+		for (final byte[] command : commands) {
+			size += Integer.BYTES + command.length;
+		}
+		
+		final ByteBuffer buffer = ByteBuffer.allocate(size);
+		
+		buffer.put(TURN);
+		buffer.putInt(turn);
+		buffer.putInt(commands.length);
+		
+		for (final byte[] command : commands) {
+			buffer.putInt(command.length);
+			buffer.put(command);
+		}
+		
+		return buffer.array();
+	}
+	
+	private void read(final int player) {
+		final TCPConnection connection = players.get(player);
+		
+		while (open && connection.isOpen()) {
+			final byte[] frame = connection.readFrame();
+			
+			if (frame == null) {
+				break;
+			}
+			
+			final ByteBuffer buffer = ByteBuffer.wrap(frame);
+			
+			try {
+				final byte type = buffer.get();
+				final int turn = buffer.getInt();
+				
+				if (type == INPUT) {
+					final byte[] command = new byte[buffer.remaining()];
+					
+					buffer.get(command);
+					receiveInput(player, turn, command);
+					sendOutgoing();
+				} else if (type == CHECKSUM) {
+					receiveChecksum(player, turn, buffer.getInt());
+					sendOutgoing();
+				} else {
+					throw new IllegalStateException("Unexpected message type: " + type);
+				}
+			} catch (final BufferUnderflowException | IllegalStateException ex) {
+				System.err.println("Invalid lockstep message from player " + player + ": " + ex);
+				
+				connection.close();
+				
+				break;
+			}
+		}
+		
+		drop(player);
+		sendOutgoing();
+	}
+	
+	/*
+	 * The frames are queued in turn order while holding the monitor and broadcast in the same order without it.
+	 * With the DISCONNECT policy broadcasting never blocks.
+	 */
+	private void sendOutgoing() {
+		synchronized (outgoing) {
+			byte[] data;
+			
+			while ((data = outgoing.poll()) != null) {
+				group.broadcast(ConnectionGroup.encodeFrame(data), OverflowPolicy.DISCONNECT);
+			}
+		}
+	}
+	
+	private synchronized void receiveInput(final int player, final int turn, final byte[] command) {
+		if (turn != inputTurns[player] || turn >= nextTurn + inputDelay) {
+			throw new IllegalStateException("Unexpected input turn: " + turn);
+		}
+		
+		inputTurns[player]++;
+		
+		final byte[][] turnInputs = inputs.computeIfAbsent(turn, key -> new byte[players.size()][]);
+		
+		turnInputs[player] = command;
+		
+		sendCompleteTurns();
+	}
+	
+	private synchronized void receiveChecksum(final int player, final int turn, final int checksum) {
+		if (turn != checksumTurns[player] || turn >= nextTurn) {
+			throw new IllegalStateException("Unexpected checksum turn: " + turn);
+		}
+		
+		checksumTurns[player]++;
+		
+		if (desyncTurn != NO_TURN) {
+			return;
+		}
+		
+		final int[] turnChecksums = checksums.computeIfAbsent(turn, key -> new int[2]);
+		final int received = turnChecksums[1];
+		
+		if (received > 0 && turnChecksums[0] != checksum) {
+			desyncTurn = turn;
+			
+			final ByteBuffer buffer = ByteBuffer.allocate(Byte.BYTES + Integer.BYTES);
+			
+			buffer.put(DESYNC);
+			buffer.putInt(turn);
+			outgoing.add(buffer.array());
+			notifyListeners(listener -> listener.desynchronized(turn));
+			
+			return;
+		}
+		
+		turnChecksums[0] = checksum;
+		turnChecksums[1] = received + 1;
+		
+		if (received + 1 >= getActivePlayerCount()) {
+			checksums.remove(turn);
+		}
+	}
+	
+	private synchronized void drop(final int player) {
+		dropped[player] = true;
+		
+		sendCompleteTurns();
+	}
+	
+	private void sendCompleteTurns() {
+		if (getActivePlayerCount() == 0) {
+			return;
+		}
+		
+		while (true) {
+			final byte[][] turnInputs = inputs.computeIfAbsent(nextTurn, key -> new byte[players.size()][]);
+			
+			for (int i = 0; i < turnInputs.length; i++) {
+				if (turnInputs[i] == null) {
+					if (!dropped[i]) {
+						return;
+					}
+					
+					turnInputs[i] = NO_INPUT;
+				}
+			}
+			
+			inputs.remove(nextTurn);
+			outgoing.add(encodeTurn(nextTurn, turnInputs));
+			
+			nextTurn++;
+		}
+	}
+	
+	private int getActivePlayerCount() {
+		int count = 0;
+		
+		for (final boolean isDropped : dropped) {
+			if (!isDropped) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Adds a player. Players can only be added before the game has been started.
+	 * @param connection The connection to the player
+	 * @return The player id or -1 if the game has already been started
+	 */
+	public synchronized int addPlayer(final TCPConnection connection) {
+		if (started) {
+			return -1;
+		}
+		
+		players.add(connection);
+		
+		return players.size() - 1;
+	}
+	
+	/**
+	 * Starts the game. Sends the player ids, the turn rate and the seed to all clients
+	 * and starts one thread per player which reads its commands.
+	 */
+	public synchronized void start() {
+		if (started || !open) {
+			return;
+		}
+		
+		final int playerCount = players.size();
+		
+		started = true;
+		dropped = new boolean[playerCount];
+		inputTurns = new int[playerCount];
+		checksumTurns = new int[playerCount];
+		
+		for (int i = 0; i < playerCount; i++) {
+			final TCPConnection connection = players.get(i);
+			final int player = i;
+			final Thread reader = new Thread(() -> read(player), "LockstepServer player " + player);
+			
+			group.add(connection);
+			connection.writeFrame(encodeStart(player, playerCount, inputDelay, turnLength, seed));
+			reader.setDaemon(true);
+			reader.start();
+		}
+	}
+	
+	/**
+	 * Closes all player connections.
+	 */
+	@Override
+	public void close() {
+		open = false;
+		
+		for (final TCPConnection connection : players) {
+			connection.close();
+		}
+	}
+	
+	/**
+	 * Returns the next turn which will be sent to the clients.
+	 * @return The turn
+	 */
+	public synchronized int getTurn() {
+		return nextTurn;
+	}
+	
+	/**
+	 * Returns the first turn in which the clients desynchronized.
+	 * @return The turn or -1 if the clients are synchronized
+	 */
+	public synchronized int getDesyncTurn() {
+		return desyncTurn;
+	}
+	
+	/**
+	 * Returns the amount of players.
+	 * @return The player count
+	 */
+	public synchronized int getPlayerCount() {
+		return players.size();
+	}
+	
+	/**
+	 * Returns true if the server has not been closed, false otherwise.
+	 * @return The state
+	 */
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+	
+}
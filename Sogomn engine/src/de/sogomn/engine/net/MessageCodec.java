@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+/**
+ * A schema-driven binary codec for message classes.
+ * Message classes need a constructor without parameters. Their non-static and non-transient fields are
+ * serialized in the order of their names. Supported field types are all primitives, strings and byte arrays.
+ * Integers are written as zigzag encoded variable length values. Messages are written directly into byte buffers.
+ * Registering types is not thread-safe, encoding and decoding is.
+ * @author Sogomn
+ *
+ */
+public final class MessageCodec {
+	
+	private HashMap<Class<?>, MessageSchema> schemasByType;
+	private MessageSchema[] schemasById;
+	private int nextId;
+	
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	/**
+	 * Constructs a new MessageCodec object without any registered message types.
+	 */
+	public MessageCodec() {
+		schemasByType = new HashMap<Class<?>, MessageSchema>();
+		schemasById = new MessageSchema[DEFAULT_CAPACITY];
+	}
+	
+	private MessageSchema getSchema(final Class<?> type) {
+		final MessageSchema schema = schemasByType.get(type);
+		
+		if (schema == null) {
+			throw new IllegalArgumentException("Unregistered message type: " + type.getName());
+		}
+		
+		return schema;
+	}
+	
+	/**
+	 * Registers a message type with the given id.
+	 * Both sides need to register the same types with the same ids.
+	 * @param id The id (non-negative)
+	 * @param type The message class
+	 * @throws IllegalArgumentException If the id is taken or the class has unsupported fields
+	 */
+	public void register(final int id, final Class<?> type) {
+		if (id < 0) {
+			throw new IllegalArgumentException("Negative message id: " + id);
+		} else if (id < schemasById.length && schemasById[id] != null) {
+			throw new IllegalArgumentException("Message id already taken: " + id);
+		}
+		
+		final MessageSchema schema = new MessageSchema(id, type);
+		
+		if (id >= schemasById.length) {
+			final MessageSchema[] newSchemas = new MessageSchema[Math.max(id + 1, schemasById.length * 2)];
+			
+			System.arraycopy(schemasById, 0, newSchemas, 0, schemasById.length);
+			schemasById = newSchemas;
+		}
+		
+		schemasById[id] = schema;
+		schemasByType.put(type, schema);
+		nextId = Math.max(nextId, id + 1);
+	}
+	
+	/**
+	 * Registers a message type with the next free id.
+	 * @param type The message class
+	 * @return The id of the type
+	 */
+	public int register(final Class<?> type) {
+		final int id = nextId;
+		
+		register(id, type);
+		
+		return id;
+	}
+	
+	/**
+	 * Writes the given message to the buffer, starting at its current position.
+	 * @param message The message
+	 * @param buffer The buffer
+	 * @throws java.nio.BufferOverflowException If the buffer is too small
+	 * @throws IllegalArgumentException If the type of the message has not been registered
+	 */
+	public void encode(final Object message, final ByteBuffer buffer) {
+		final MessageSchema schema = getSchema(message.getClass());
+		
+		VarInt.putVarInt(buffer, schema.id);
+		
+		try {
+			schema.encode(message, buffer);
+		} catch (final RuntimeException | Error ex) {
+			throw ex;
+		} catch (final Throwable t) {
+			throw new IllegalStateException("Could not encode message", t);
+		}
+	}
+	
+	/**
+	 * Reads the next message from the buffer, starting at its current position.
+	 * @param buffer The buffer
+	 * @return The message
+	 * @throws java.nio.BufferUnderflowException If the buffer does not hold a whole message
+	 * @throws IllegalStateException If the message type is unknown
+	 */
+	public Object decode(final ByteBuffer buffer) {
+		final int id = VarInt.getVarInt(buffer);
+		final MessageSchema schema = id >= 0 && id < schemasById.length ? schemasById[id] : null;
+		
+		if (schema == null) {
+			throw new IllegalStateException("Unknown message id: " + id);
+		}
+		
+		try {
+			return schema.decode(buffer);
+		} catch (final RuntimeException | Error ex) {
+			throw ex;
+		} catch (final Throwable t) {
+			throw new IllegalStateException("Could not decode message", t);
+		}
+	}
+	
+	/**
+	 * Returns whether the given message type has been registered.
+	 * @param type The message class
+	 * @return The state
+	 */
+	public boolean isRegistered(final Class<?> type) {
+		return schemasByType.containsKey(type);
+	}
+	
+}
@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * Holds the cached field accessors of one message class.
+ * All non-static and non-transient fields are serialized in the order of their names.
+ * Reflection is only used once when the schema is created; encoding and decoding use method handles.
+ * @author Sogomn
+ *
+ */
+final class MessageSchema {
+	
+	final int id;
+	final Class<?> type;
+	
+	private MethodHandle constructor;
+	private int[] types;
+	private MethodHandle[] getters, setters;
+	
+	private static final int BOOLEAN = 0;
+	private static final int BYTE = 1;
+	private static final int SHORT = 2;
+	private static final int CHAR = 3;
+	private static final int INT = 4;
+	private static final int LONG = 5;
+	private static final int FLOAT = 6;
+	private static final int DOUBLE = 7;
+	private static final int STRING = 8;
+	private static final int BYTES = 9;
+	
+	private static final int NULL_LENGTH = 0;
+	
+	public MessageSchema(final int id, final Class<?> type) {
+		this.id = id;
+		this.type = type;
+		
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		final ArrayList<Field> fields = collectFields(type);
+		final int fieldCount = fields.size();
+		
+		types = new int[fieldCount];
+		getters = new MethodHandle[fieldCount];
+		setters = new MethodHandle[fieldCount];
+		
+		try {
+			final Constructor<?> noArgs = type.getDeclaredConstructor();
+			
+			noArgs.setAccessible(true);
+			constructor = lookup.unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+			
+			for (int i = 0; i < fieldCount; i++) {
+				final Field field = fields.get(i);
+				final Class<?> fieldType = field.getType();
+				
+				field.setAccessible(true);
+				
+				types[i] = typeOf(field);
+				getters[i] = lookup.unreflectGetter(field).asType(MethodType.methodType(fieldType, Object.class));
+				setters[i] = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, fieldType));
+			}
+		} catch (final NoSuchMethodException | IllegalAccessException ex) {
+			throw new IllegalArgumentException("Cannot access message class " + type.getName(), ex);
+		}
+	}
+	
+	private static ArrayList<Field> collectFields(final Class<?> type) {
+		final ArrayList<Field> fields = new ArrayList<Field>();
+		
+		for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+			for (final Field field : current.getDeclaredFields()) {
+				final int modifiers = field.getModifiers();
+				
+				if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+					fields.add(field);
+				}
+			}
+		}
+		
+		fields.sort(Comparator.comparing(Field::getName).thenComparing(field -> field.getDeclaringClass().getName()));
+		
+		return fields;
+	}
+	
+	private static int typeOf(final Field field) {
+		final Class<?> type = field.getType();
+		
+		if (type == boolean.class) {
+			return BOOLEAN;
+		} else if (type == byte.class) {
+			return BYTE;
+		} else if (type == short.class) {
+			return SHORT;
+		} else if (type == char.class) {
+			return CHAR;
+		} else if (type == int.class) {
+			return INT;
+		} else if (type == long.class) {
+			return LONG;
+		} else if (type == float.class) {
+			return FLOAT;
+		} else if (type == double.class) {
+			return DOUBLE;
+		} else if (type == String.class) {
+			return STRING;
+		} else if (type == byte[].class) {
+			return BYTES;
+		}
+		
+		throw new IllegalArgumentException("Unsupported field type: " + field);
+	}
+	
+	private static void putString(final ByteBuffer buffer, final String string) {
+		if (string == null) {
+			VarInt.putVarInt(buffer, NULL_LENGTH);
+			
+			return;
+		}
+		
+		final int length = string.length();
+		
+		int byteCount = 0;
+		
+		for (int i = 0; i < length; i++) {
+			final char c = string.charAt(i);
+			
+			if (c < 0x80) {
+				byteCount += 1;
+			} else if (c < 0x800) {
+				byteCount += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+				byteCount += 4;
+				i++;
+			} else {
+				byteCount += 3;
+			}
+		}
+		
+		VarInt.putVarInt(buffer, byteCount + 1);
+		
+		for (int i = 0; i < length; i++) {
+			final char c = string.charAt(i);
+			
+			if (c < 0x80) {
+				buffer.put((byte)c);
+			} else if (c < 0x800) {
+				buffer.put((byte)(0xc0 | (c >> 6)));
+				buffer.put((byte)(0x80 | (c & 0x3f)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+				final int codePoint = Character.toCodePoint(c, string.charAt(++i));
+				
+				buffer.put((byte)(0xf0 | (codePoint >> 18)));
+				buffer.put((byte)(0x80 | ((codePoint >> 12) & 0x3f)));
+				buffer.put((byte)(0x80 | ((codePoint >> 6) & 0x3f)));
+				buffer.put((byte)(0x80 | (codePoint & 0x3f)));
+			} else {
+				buffer.put((byte)(0xe0 | (c >> 12)));
+				buffer.put((byte)(0x80 | ((c >> 6) & 0x3f)));
+				buffer.put((byte)(0x80 | (c & 0x3f)));
+			}
+		}
+	}
+	
+	/*
+	 * Reads the length prefix of a string or byte array. The length comes from the peer, so it is checked against the
+	 * remaining bytes; a reused buffer could otherwise return stale bytes of an earlier message.
+	 */
+	private static int getLength(final ByteBuffer buffer) {
+		final int length = VarInt.getVarInt(buffer) - 1;
+		
+		if (length < NULL_LENGTH - 1 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		
+		return length;
+	}
+	
+	private static String getString(final ByteBuffer buffer) {
+		final int length = getLength(buffer);
+		
+		if (length < 0) {
+			return null;
+		}
+		
+		final String string;
+		
+		if (buffer.hasArray()) {
+			string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			
+			buffer.position(buffer.position() + length);
+		} else {
+			final byte[] data = new byte[length];
+			
+			buffer.get(data);
+			string = new String(data, StandardCharsets.UTF_8);
+		}
+		
+		return string;
+	}
+	
+	private static void putBytes(final ByteBuffer buffer, final byte[] data) {
+		if (data == null) {
+			VarInt.putVarInt(buffer, NULL_LENGTH);
+		} else {
+			VarInt.putVarInt(buffer, data.length + 1);
+			buffer.put(data);
+		}
+	}
+	
+	private static byte[] getBytes(final ByteBuffer buffer) {
+		final int length = getLength(buffer);
+		
+		if (length < 0) {
+			return null;
+		}
+		
+		final byte[] data = new byte[length];
+		
+		buffer.get(data);
+		
+		return data;
+	}
+	
+	void encode(final Object message, final ByteBuffer buffer) throws Throwable {
+		for (int i = 0; i < types.length; i++) {
+			final MethodHandle getter = getters[i];
+			
+			switch (types[i]) {
+			case BOOLEAN:
+				buffer.put((boolean)getter.invokeExact(message) ? (byte)1 : (byte)0);
+				break;
+			case BYTE:
+				buffer.put((byte)getter.invokeExact(message));
+				break;
+			case SHORT:
+				VarInt.putSignedVarInt(buffer, (short)getter.invokeExact(message));
+				break;
+			case CHAR:
+				VarInt.putVarInt(buffer, (char)getter.invokeExact(message));
+				break;
+			case INT:
+				VarInt.putSignedVarInt(buffer, (int)getter.invokeExact(message));
+				break;
+			case LONG:
+				VarInt.putSignedVarLong(buffer, (long)getter.invokeExact(message));
+				break;
+			case FLOAT:
+				buffer.putFloat((float)getter.invokeExact(message));
+				break;
+			case DOUBLE:
+				buffer.putDouble((double)getter.invokeExact(message));
+				break;
+			case STRING:
+				putString(buffer, (String)getter.invokeExact(message));
+				break;
+			case BYTES:
+				putBytes(buffer, (byte[])getter.invokeExact(message));
+				break;
+			}
+		}
+	}
+	
+	Object decode(final ByteBuffer buffer) throws Throwable {
+		final Object message = (Object)constructor.invokeExact();
+		
+		for (int i = 0; i < types.length; i++) {
+			final MethodHandle setter = setters[i];
+			
+			switch (types[i]) {
+			case BOOLEAN:
+				setter.invokeExact(message, buffer.get() != 0);
+				break;
+			case BYTE:
+				setter.invokeExact(message, buffer.get());
+				break;
+			case SHORT:
+				setter.invokeExact(message, (short)VarInt.getSignedVarInt(buffer));
+				break;
+			case CHAR:
+				setter.invokeExact(message, (char)VarInt.getVarInt(buffer));
+				break;
+			case INT:
+				setter.invokeExact(message, VarInt.getSignedVarInt(buffer));
+				break;
+			case LONG:
+				setter.invokeExact(message, VarInt.getSignedVarLong(buffer));
+				break;
+			case FLOAT:
+				setter.invokeExact(message, buffer.getFloat());
+				break;
+			case DOUBLE:
+				setter.invokeExact(message, buffer.getDouble());
+				break;
+			case STRING:
+				setter.invokeExact(message, getString(buffer));
+				break;
+			case BYTES:
+				setter.invokeExact(message, getBytes(buffer));
+				break;
+			}
+		}
+		
+		return message;
+	}
+	
+}
@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * A bounded queue of frames waiting to be sent over a connection.
+ * What happens when the queue is full is decided per frame by an overflow policy.
+ * The queue also keeps track of its depth and of the frames it had to drop.
+ * All methods are thread-safe.
+ * @author Sogomn
+ *
+ */
+public final class OutboundQueue {
+	
+	private ArrayDeque<Entry> entries;
+	private int capacity;
+	private int inFlight;
+	private int controlFrames;
+	private boolean closed;
+	
+	private int peakSize;
+	private long dropped, enqueued;
+	
+	/*
+	 * Control frames bypass the capacity, so a peer flooding pings could otherwise grow the queue without limit
+	 */
+	private static final int MAX_CONTROL_FRAMES = 4;
+	
+	/**
+	 * Constructs a new OutboundQueue object with the given capacity.
+	 * @param capacity The maximum amount of queued frames
+	 */
+	public OutboundQueue(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		
+		this.capacity = capacity;
+		
+		entries = new ArrayDeque<Entry>();
+	}
+	
+	private boolean dropOldest() {
+		final Iterator<Entry> iterator = entries.iterator();
+		
+		while (iterator.hasNext()) {
+			if (iterator.next().droppable) {
+				iterator.remove();
+				dropped++;
+				
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Adds a frame to the queue.
+	 * If the queue is full the given policy is applied:
+	 * DROP_OLDEST removes the oldest frame which has been queued with that policy as well; if there is none, the new frame is dropped.
+	 * BLOCK waits until there is space again. DISCONNECT rejects the frame.
+	 * @param frame The frame
+	 * @param policy The overflow policy
+	 * @return True if the frame has been queued; false if it has been dropped or rejected or if the queue is closed
+	 */
+	public synchronized boolean offer(final ByteBuffer frame, final OverflowPolicy policy) {
+		if (closed) {
+			return false;
+		}
+		
+		if (entries.size() >= capacity) {
+			if (policy == OverflowPolicy.DROP_OLDEST) {
+				if (!dropOldest()) {
+					dropped++;
+					
+					return false;
+				}
+			} else if (policy == OverflowPolicy.BLOCK) {
+				try {
+					while (entries.size() >= capacity && !closed) {
+						wait();
+					}
+				} catch (final InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					
+					return false;
+				}
+				
+				if (closed) {
+					return false;
+				}
+			} else {
+				return false;
+			}
+		}
+		
+		final Entry entry = new Entry(frame, policy == OverflowPolicy.DROP_OLDEST, false);
+		
+		entries.add(entry);
+		enqueued++;
+		peakSize = Math.max(peakSize, entries.size());
+		
+		notifyAll();
+		
+		return true;
+	}
+	
+	/**
+	 * Adds a frame to the front of the queue, regardless of the capacity. Meant for small control frames like pings
+	 * which should overtake the queued data. Once queued, such frames are never dropped.
+	 * At most four control frames can be queued at once; further ones are rejected and counted as dropped.
+	 * @param frame The frame
+	 * @return True if the frame has been queued; false if too many control frames are queued or the queue is closed
+	 */
+	public synchronized boolean offerFirst(final ByteBuffer frame) {
+		if (closed) {
+			return false;
+		} else if (controlFrames >= MAX_CONTROL_FRAMES) {
+			dropped++;
+			
+			return false;
+		}
+		
+		entries.addFirst(new Entry(frame, false, true));
+		controlFrames++;
+		enqueued++;
+		peakSize = Math.max(peakSize, entries.size());
+		
+		notifyAll();
+		
+		return true;
+	}
+	
+	/**
+	 * Moves as many queued frames as possible into the given array.
+	 * Blocks until at least one frame is available or the queue has been closed.
+	 * The frames count as in flight until "completed" is called.
+	 * @param batch The array
+	 * @return The amount of frames or -1 if the queue has been closed
+	 * @throws InterruptedException If the thread has been interrupted while waiting
+	 */
+	public synchronized int drainTo(final ByteBuffer[] batch) throws InterruptedException {
+		while (entries.isEmpty() && !closed) {
+			wait();
+		}
+		
+		if (closed) {
+			return -1;
+		}
+		
+		int count = 0;
+		
+		while (count < batch.length && !entries.isEmpty()) {
+			final Entry entry = entries.poll();
+			
+			if (entry.control) {
+				controlFrames--;
+			}
+			
+			batch[count++] = entry.frame;
+		}
+		
+		inFlight += count;
+		
+		notifyAll();
+		
+		return count;
+	}
+	
+	/**
+	 * Marks the given amount of frames returned by "drainTo" as sent.
+	 * @param count The amount of frames
+	 */
+	public synchronized void completed(final int count) {
+		inFlight = Math.max(inFlight - count, 0);
+		
+		notifyAll();
+	}
+	
+	/**
+	 * Blocks until all queued frames have been sent or the queue has been closed.
+	 * @throws InterruptedException If the thread has been interrupted while waiting
+	 */
+	public synchronized void awaitEmpty() throws InterruptedException {
+		while ((!entries.isEmpty() || inFlight > 0) && !closed) {
+			wait();
+		}
+	}
+	
+	/**
+	 * Closes the queue. All queued frames are discarded and waiting threads are woken up.
+	 */
+	public synchronized void close() {
+		closed = true;
+		inFlight = 0;
+		controlFrames = 0;
+		
+		entries.clear();
+		notifyAll();
+	}
+	
+	/**
+	 * Sets the capacity. Frames that are already queued are kept even if there are more than the new capacity.
+	 * @param capacity The maximum amount of queued frames
+	 */
+	public synchronized void setCapacity(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		
+		this.capacity = capacity;
+		
+		notifyAll();
+	}
+	
+	/**
+	 * Returns the capacity.
+	 * @return The maximum amount of queued frames
+	 */
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Returns the amount of queued frames.
+	 * @return The queue depth
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Returns the highest amount of frames that have been queued at once.
+	 * @return The peak queue depth
+	 */
+	public synchronized int getPeakSize() {
+		return peakSize;
+	}
+	
+	/**
+	 * Returns the amount of frames that have been dropped due to overflows.
+	 * @return The dropped frame count
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+	
+	/**
+	 * Returns the amount of frames that have been queued in total.
+	 * @return The queued frame count
+	 */
+	public synchronized long getEnqueued() {
+		return enqueued;
+	}
+	
+	/**
+	 * Returns whether the queue has been closed.
+	 * @return The state
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+	
+	/**
+	 * Holds the policies that decide what happens when a frame is added to a full queue.
+	 * @author Sogomn
+	 *
+	 */
+	public enum OverflowPolicy {
+		
+		/**
+		 * Older frames with the same policy are dropped in favor of the new one.
+		 * Good for state updates which are outdated by newer ones anyway.
+		 */
+		DROP_OLDEST,
+		
+		/**
+		 * The caller waits until there is space again.
+		 * Nothing gets lost but a slow receiver slows down the sender.
+		 */
+		BLOCK,
+		
+		/**
+		 * The connection gets closed.
+		 * Nothing gets lost silently and a slow receiver cannot slow down the sender.
+		 */
+		DISCONNECT;
+		
+	}
+	
+	private static final class Entry {
+		
+		private final ByteBuffer frame;
+		private final boolean droppable;
+		private final boolean control;
+		
+		public Entry(final ByteBuffer frame, final boolean droppable, final boolean control) {
+			this.frame = frame;
+			this.droppable = droppable;
+			this.control = control;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.util.ArrayDeque;
+import java.util.function.BiConsumer;
+
+/**
+ * Predicts the state of the local player by applying inputs immediately instead of waiting for the server.
+ * Every input gets a sequence number which should be sent to the server together with the input.
+ * When an authoritative state arrives with the sequence number of the last input the server has processed,
+ * the state is reset to it and all inputs the server has not processed yet are applied again (reconciliation).
+ * The model which applies an input to a state has to be the same on both sides.
+ * This class is not thread-safe.
+ * @author Sogomn
+ *
+ * @param <T> The input type
+ */
+public final class PredictionBuffer<T> {
+	
+	private BiConsumer<double[], T> model;
+	private ArrayDeque<Input<T>> pending;
+	private double[] state, previous;
+	private int sequence;
+	private int capacity;
+	private double error;
+	
+	private static final int DEFAULT_CAPACITY = 256;
+	
+	/**
+	 * Constructs a new PredictionBuffer object.
+	 * @param model Applies an input to a state in place
+	 * @param initialState The initial state; copied
+	 */
+	public PredictionBuffer(final BiConsumer<double[], T> model, final double... initialState) {
+		this.model = model;
+		
+		pending = new ArrayDeque<Input<T>>();
+		state = initialState.clone();
+		previous = new double[state.length];
+		capacity = DEFAULT_CAPACITY;
+	}
+	
+	/**
+	 * Applies an input to the predicted state and remembers it until the server has acknowledged it.
+	 * If more inputs than the capacity are unacknowledged, the oldest one is forgotten.
+	 * @param input The input
+	 * @return The sequence number of the input
+	 */
+	public int push(final T input) {
+		final int number = sequence++;
+		
+		if (pending.size() == capacity) {
+			pending.removeFirst();
+		}
+		
+		pending.addLast(new Input<T>(number, input));
+		model.accept(state, input);
+		
+		return number;
+	}
+	
+	/**
+	 * Resets the state to the authoritative one and applies the unacknowledged inputs again.
+	 * @param acknowledged The sequence number of the last input the server has processed
+	 * @param serverState The state of the server after processing that input
+	 * @return The distance between the old and the new predicted state, e.g. for smoothing visual corrections
+	 */
+	public double reconcile(final int acknowledged, final double[] serverState) {
+		while (!pending.isEmpty() && pending.peekFirst().sequence - acknowledged <= 0) {
+			pending.removeFirst();
+		}
+		
+		System.arraycopy(state, 0, previous, 0, state.length);
+		System.arraycopy(serverState, 0, state, 0, Math.min(serverState.length, state.length));
+		
+		for (final Input<T> input : pending) {
+			model.accept(state, input.value);
+		}
+		
+		double sum = 0;
+		
+		for (int i = 0; i < state.length; i++) {
+			final double difference = state[i] - previous[i];
+			
+			sum += difference * difference;
+		}
+		
+		error = Math.sqrt(sum);
+		
+		return error;
+	}
+	
+	/**
+	 * Sets the maximum amount of unacknowledged inputs.
+	 * @param capacity The capacity
+	 */
+	public void setCapacity(final int capacity) {
+		this.capacity = Math.max(capacity, 1);
+		
+		while (pending.size() > this.capacity) {
+			pending.removeFirst();
+		}
+	}
+	
+	/**
+	 * Returns the predicted state. The array must not be modified.
+	 * @return The state
+	 */
+	public double[] getState() {
+		return state;
+	}
+	
+	/**
+	 * Returns the amount of inputs which have not been acknowledged yet.
+	 * @return The pending input count
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+	
+	/**
+	 * Returns the sequence number the next input will get.
+	 * @return The sequence number
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+	
+	/**
+	 * Returns the distance the state has been corrected by during the last reconciliation.
+	 * @return The prediction error
+	 */
+	public double getError() {
+		return error;
+	}
+	
+	private static final class Input<T> {
+		
+		private final int sequence;
+		private final T value;
+		
+		public Input(final int sequence, final T value) {
+			this.sequence = sequence;
+			this.value = value;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+import de.sogomn.engine.util.AbstractListenerContainer;
+
+/**
+ * The client side of the state replication.
+ * Decodes the snapshots sent by a Replicator and writes the new field values to the local entities.
+ * The returned tick should be sent back to the server so it can be acknowledged there.
+ * This class is not thread-safe.
+ * @author Sogomn
+ *
+ */
+public final class ReplicationReceiver extends AbstractListenerContainer<IReplicationListener> {
+	
+	private IntFunction<IReplicable> factory;
+	private TreeMap<Integer, IReplicable> entities;
+	private Snapshot[] history;
+	
+	private int[] changedIds;
+	private int[] changedTypes;
+	private int[][] changedFields;
+	
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	/*
+	 * Smallest encodings: a packed value takes at least its length prefix, an entry additionally its type
+	 */
+	private static final int MIN_FIELD_BITS = 6;
+	private static final int MIN_ENTRY_BITS = MIN_FIELD_BITS + Snapshot.TYPE_BITS;
+	
+	/**
+	 * Constructs a new ReplicationReceiver object.
+	 * @param factory Creates the local entity for a new id. May return null to ignore the entity
+	 */
+	public ReplicationReceiver(final IntFunction<IReplicable> factory) {
+		this.factory = factory;
+		
+		entities = new TreeMap<Integer, IReplicable>();
+		history = Snapshot.createHistory();
+		changedIds = new int[DEFAULT_CAPACITY];
+		changedTypes = new int[DEFAULT_CAPACITY];
+		changedFields = new int[DEFAULT_CAPACITY][];
+	}
+	
+	private void ensureCapacity(final int capacity) {
+		if (capacity > changedIds.length) {
+			changedIds = new int[capacity];
+			changedTypes = new int[capacity];
+			changedFields = new int[capacity][];
+		}
+	}
+	
+	/*
+	 * The counts come from the peer, so they are checked against the data that is actually left before anything gets allocated
+	 */
+	private static void checkCount(final BitReader reader, final int count, final int minBits) {
+		if (count < 0 || (long)count * minBits > reader.remaining()) {
+			throw new IllegalStateException("Invalid count " + count);
+		}
+	}
+	
+	private static int[] readFields(final BitReader reader) {
+		final int fieldCount = reader.readPacked();
+		
+		checkCount(reader, fieldCount, MIN_FIELD_BITS);
+		
+		final int[] values = new int[fieldCount];
+		
+		for (int i = 0; i < fieldCount; i++) {
+			values[i] = reader.readSignedPacked();
+		}
+		
+		return values;
+	}
+	
+	private static int[] readChanges(final BitReader reader, final int[] baseline) {
+		final int[] values = baseline.clone();
+		
+		for (int i = 0; i < values.length; i++) {
+			if (reader.readBoolean()) {
+				values[i] += reader.readSignedPacked();
+			}
+		}
+		
+		return values;
+	}
+	
+	private int readEntries(final BitReader reader, final Snapshot baseline) {
+		final int count = reader.readPacked();
+		
+		checkCount(reader, count, MIN_ENTRY_BITS);
+		ensureCapacity(count);
+		
+		int id = 0;
+		
+		for (int i = 0; i < count; i++) {
+			id += reader.readSignedPacked();
+			
+			final int type = reader.readBits(Snapshot.TYPE_BITS);
+			
+			changedIds[i] = id;
+			changedTypes[i] = type;
+			
+			if (type == Snapshot.TYPE_CREATE) {
+				changedFields[i] = readFields(reader);
+			} else if (type == Snapshot.TYPE_UPDATE) {
+				final int index = baseline == null ? -1 : baseline.indexOf(id);
+				
+				if (index < 0) {
+					throw new IllegalStateException("Update for unknown entity " + id);
+				}
+				
+				changedFields[i] = readChanges(reader, baseline.fields[index]);
+			} else {
+				changedFields[i] = null;
+			}
+		}
+		
+		return count;
+	}
+	
+	private static void copyInto(final Snapshot target, final int id, final int[] values) {
+		final int[] copy = target.append(id, values.length);
+		
+		System.arraycopy(values, 0, copy, 0, values.length);
+	}
+	
+	private void merge(final Snapshot baseline, final Snapshot target, final int count) {
+		final int baselineSize = baseline == null ? 0 : baseline.size;
+		
+		int i = 0, j = 0;
+		
+		while (i < baselineSize || j < count) {
+			final int oldId = i < baselineSize ? baseline.ids[i] : Integer.MAX_VALUE;
+			final int newId = j < count ? changedIds[j] : Integer.MAX_VALUE;
+			
+			if (i < baselineSize && (j == count || oldId < newId)) {
+				copyInto(target, oldId, baseline.fields[i]);
+				
+				i++;
+			} else {
+				if (changedTypes[j] != Snapshot.TYPE_REMOVE) {
+					copyInto(target, newId, changedFields[j]);
+				}
+				
+				if (i < baselineSize && oldId == newId) {
+					i++;
+				}
+				
+				j++;
+			}
+		}
+	}
+	
+	private void apply(final Snapshot snapshot) {
+		entities.entrySet().removeIf(entry -> {
+			final int id = entry.getKey();
+			
+			if (snapshot.indexOf(id) < 0) {
+				final IReplicable entity = entry.getValue();
+				
+				notifyListeners(listener -> listener.removed(id, entity));
+				
+				return true;
+			}
+			
+			return false;
+		});
+		
+		for (int i = 0; i < snapshot.size; i++) {
+			final int id = snapshot.ids[i];
+			final int[] values = snapshot.fields[i];
+			
+			IReplicable entity = entities.get(id);
+			
+			if (entity == null) {
+				entity = factory.apply(id);
+				
+				if (entity == null) {
+					continue;
+				}
+				
+				final IReplicable created = entity;
+				
+				entities.put(id, created);
+				notifyListeners(listener -> listener.created(id, created));
+			}
+			
+			final int fieldCount = Math.min(values.length, entity.getFieldCount());
+			
+			for (int j = 0; j < fieldCount; j++) {
+				entity.setField(j, values[j]);
+			}
+		}
+	}
+	
+	/**
+	 * Decodes the given snapshot data and applies it to the local entities.
+	 * @param data The data created by the Replicator
+	 * @return The tick of the snapshot which should be acknowledged, or NO_TICK if the snapshot could not be decoded
+	 */
+	public int receive(final byte[] data) {
+		final BitReader reader = new BitReader(data);
+		
+		try {
+			final int tick = reader.readBits(Integer.SIZE);
+			final boolean hasBaseline = reader.readBoolean();
+			final Snapshot baseline;
+			
+			if (hasBaseline) {
+				final int baselineTick = reader.readBits(Integer.SIZE);
+				
+				baseline = Snapshot.find(history, baselineTick);
+				
+				if (baseline == null) {
+					return Replicator.NO_TICK;
+				}
+			} else {
+				baseline = null;
+			}
+			
+			final int count = readEntries(reader, baseline);
+			final Snapshot snapshot = history[Math.floorMod(tick, Snapshot.HISTORY_SIZE)];
+			
+			if (snapshot == baseline) {
+				return Replicator.NO_TICK;
+			}
+			
+			snapshot.clear(tick);
+			merge(baseline, snapshot, count);
+			apply(snapshot);
+			
+			return tick;
+		} catch (final IllegalStateException ex) {
+			ex.printStackTrace();
+			
+			return Replicator.NO_TICK;
+		}
+	}
+	
+	/**
+	 * Reads the next frame from the connection and applies it.
+	 * @param connection The connection to the server
+	 * @return The tick of the snapshot which should be acknowledged, or NO_TICK in case of failure
+	 */
+	public int receive(final TCPConnection connection) {
+		final byte[] data = connection.readFrame();
+		
+		if (data == null) {
+			return Replicator.NO_TICK;
+		}
+		
+		return receive(data);
+	}
+	
+	/**
+	 * Returns the local entity with the given id.
+	 * @param id The id
+	 * @return The entity or null if there is none
+	 */
+	public IReplicable getEntity(final int id) {
+		return entities.get(id);
+	}
+	
+	/**
+	 * Returns the amount of replicated entities.
+	 * @return The entity count
+	 */
+	public int getEntityCount() {
+		return entities.size();
+	}
+	
+}
@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+import de.sogomn.engine.IUpdatable;
+
+/**
+ * The server side of the state replication.
+ * Takes a snapshot of all registered entities every tick and sends clients only the bit-packed changes
+ * relative to the last snapshot they have acknowledged. Clients without a usable acknowledged snapshot get the full state.
+ * The method "update" (or "snapshot") needs to be called once per tick. This class is not thread-safe.
+ * @author Sogomn
+ *
+ */
+public final class Replicator implements IUpdatable {
+	
+	private TreeMap<Integer, IReplicable> entities;
+	private Snapshot[] history;
+	private int tick;
+	
+	private BitWriter writer;
+	
+	/**
+	 * Represents no tick. Used for clients that have not acknowledged anything yet.
+	 */
+	public static final int NO_TICK = -1;
+	
+	/**
+	 * Constructs a new Replicator object.
+	 */
+	public Replicator() {
+		entities = new TreeMap<Integer, IReplicable>();
+		history = Snapshot.createHistory();
+		tick = NO_TICK;
+		writer = new BitWriter();
+	}
+	
+	private void writeFields(final int[] values) {
+		writer.writePacked(values.length);
+		
+		for (int i = 0; i < values.length; i++) {
+			writer.writeSignedPacked(values[i]);
+		}
+	}
+	
+	private void writeChanges(final int[] baseline, final int[] values) {
+		for (int i = 0; i < values.length; i++) {
+			final int difference = values[i] - baseline[i];
+			
+			if (difference == 0) {
+				writer.writeBoolean(false);
+			} else {
+				writer.writeBoolean(true);
+				writer.writeSignedPacked(difference);
+			}
+		}
+	}
+	
+	private int countChanges(final Snapshot baseline, final Snapshot current) {
+		int changes = 0;
+		int i = 0, j = 0;
+		
+		while (i < baseline.size || j < current.size) {
+			final int oldId = i < baseline.size ? baseline.ids[i] : Integer.MAX_VALUE;
+			final int newId = j < current.size ? current.ids[j] : Integer.MAX_VALUE;
+			
+			if (i < baseline.size && (j == current.size || oldId < newId)) {
+				changes++;
+				i++;
+			} else if (j < current.size && (i == baseline.size || newId < oldId)) {
+				changes++;
+				j++;
+			} else {
+				if (!Arrays.equals(baseline.fields[i], current.fields[j])) {
+					changes++;
+				}
+				
+				i++;
+				j++;
+			}
+		}
+		
+		return changes;
+	}
+	
+	private void writeEntry(final int id, final int previousId, final int type) {
+		writer.writeSignedPacked(id - previousId);
+		writer.writeBits(type, Snapshot.TYPE_BITS);
+	}
+	
+	private void writeFull(final Snapshot current) {
+		writer.writePacked(current.size);
+		
+		int previousId = 0;
+		
+		for (int i = 0; i < current.size; i++) {
+			final int id = current.ids[i];
+			
+			writeEntry(id, previousId, Snapshot.TYPE_CREATE);
+			writeFields(current.fields[i]);
+			
+			previousId = id;
+		}
+	}
+	
+	private void writeDelta(final Snapshot baseline, final Snapshot current) {
+		writer.writePacked(countChanges(baseline, current));
+		
+		int previousId = 0;
+		int i = 0, j = 0;
+		
+		while (i < baseline.size || j < current.size) {
+			final int oldId = i < baseline.size ? baseline.ids[i] : Integer.MAX_VALUE;
+			final int newId = j < current.size ? current.ids[j] : Integer.MAX_VALUE;
+			
+			if (i < baseline.size && (j == current.size || oldId < newId)) {
+				writeEntry(oldId, previousId, Snapshot.TYPE_REMOVE);
+				
+				previousId = oldId;
+				i++;
+			} else if (j < current.size && (i == baseline.size || newId < oldId)) {
+				writeEntry(newId, previousId, Snapshot.TYPE_CREATE);
+				writeFields(current.fields[j]);
+				
+				previousId = newId;
+				j++;
+			} else {
+				final int[] oldValues = baseline.fields[i];
+				final int[] newValues = current.fields[j];
+				
+				if (oldValues.length != newValues.length) {
+					writeEntry(newId, previousId, Snapshot.TYPE_CREATE);
+					writeFields(newValues);
+					
+					previousId = newId;
+				} else if (!Arrays.equals(oldValues, newValues)) {
+					writeEntry(newId, previousId, Snapshot.TYPE_UPDATE);
+					writeChanges(oldValues, newValues);
+					
+					previousId = newId;
+				}
+				
+				i++;
+				j++;
+			}
+		}
+	}
+	
+	/**
+	 * Takes a snapshot. Same as calling "snapshot".
+	 */
+	@Override
+	public void update(final double delta) {
+		snapshot();
+	}
+	
+	/**
+	 * Advances the tick counter and captures the fields of all registered entities.
+	 */
+	public void snapshot() {
+		tick++;
+		
+		final Snapshot snapshot = history[Math.floorMod(tick, Snapshot.HISTORY_SIZE)];
+		
+		snapshot.clear(tick);
+		
+		for (final Entry<Integer, IReplicable> entry : entities.entrySet()) {
+			final IReplicable entity = entry.getValue();
+			final int fieldCount = entity.getFieldCount();
+			final int[] values = snapshot.append(entry.getKey(), fieldCount);
+			
+			for (int i = 0; i < fieldCount; i++) {
+				values[i] = entity.getField(i);
+			}
+		}
+	}
+	
+	/**
+	 * Encodes the latest snapshot for the given client.
+	 * Only the changes relative to the snapshot the client has acknowledged last are included.
+	 * @param client The client
+	 * @return The encoded snapshot
+	 * @throws IllegalStateException If no snapshot has been taken yet
+	 */
+	public byte[] writeDelta(final Client client) {
+		final Snapshot current = Snapshot.find(history, tick);
+		
+		if (current == null) {
+			throw new IllegalStateException("No snapshot has been taken yet");
+		}
+		
+		final Snapshot view = client.history == null ? current : client.filter(current);
+		final Snapshot baseline = Snapshot.find(client.history == null ? history : client.history, client.ackedTick);
+		
+		writer.reset();
+		writer.writeBits(tick, Integer.SIZE);
+		
+		if (baseline == null) {
+			writer.writeBoolean(false);
+			writeFull(view);
+		} else {
+			writer.writeBoolean(true);
+			writer.writeBits(baseline.tick, Integer.SIZE);
+			writeDelta(baseline, view);
+		}
+		
+		return writer.toByteArray();
+	}
+	
+	/**
+	 * Encodes the latest snapshot for the given client and sends it as a frame.
+	 * @param client The client
+	 * @param connection The connection of the client
+	 */
+	public void send(final Client client, final TCPConnection connection) {
+		final byte[] data = writeDelta(client);
+		
+		connection.writeFrame(data);
+	}
+	
+	/**
+	 * Marks the given tick as received by the client.
+	 * Future deltas for this client will be based on that snapshot. Older acknowledgements are ignored.
+	 * @param client The client
+	 * @param tick The tick returned by the ReplicationReceiver
+	 */
+	public void acknowledge(final Client client, final int tick) {
+		if (tick == NO_TICK || tick > this.tick) {
+			return;
+		}
+		
+		if (client.ackedTick == NO_TICK || tick > client.ackedTick) {
+			client.ackedTick = tick;
+		}
+	}
+	
+	/**
+	 * Creates the replication state for a new client.
+	 * @return The client state
+	 */
+	public Client createClient() {
+		return new Client();
+	}
+	
+	/**
+	 * Registers an entity. Its fields will be included starting with the next snapshot.
+	 * @param id The unique id of the entity
+	 * @param entity The entity
+	 */
+	public void register(final int id, final IReplicable entity) {
+		entities.put(id, entity);
+	}
+	
+	/**
+	 * Unregisters the entity with the given id.
+	 * Clients will remove it once they receive the next snapshot.
+	 * @param id The id of the entity
+	 */
+	public void unregister(final int id) {
+		entities.remove(id);
+	}
+	
+	/**
+	 * Returns the current tick.
+	 * @return The tick or NO_TICK if no snapshot has been taken yet
+	 */
+	public int getTick() {
+		return tick;
+	}
+	
+	/**
+	 * Holds the replication state of one client.
+	 * Instances can be obtained from a Replicator with the method "createClient".
+	 * @author Sogomn
+	 *
+	 */
+	public static final class Client {
+		
+		private int ackedTick;
+		private int filteredTick;
+		private IntPredicate filter;
+		private Snapshot[] history;
+		
+		private Client() {
+			ackedTick = NO_TICK;
+			filteredTick = NO_TICK;
+		}
+		
+		/*
+		 * The view of a tick is only built once. If the client has already acknowledged the current tick,
+		 * its slot is the baseline and must not be overwritten while the delta is written.
+		 */
+		private Snapshot filter(final Snapshot current) {
+			final Snapshot view = history[Math.floorMod(current.tick, Snapshot.HISTORY_SIZE)];
+			
+			if (filteredTick == current.tick && view.tick == current.tick) {
+				return view;
+			}
+			
+			filteredTick = current.tick;
+			view.clear(current.tick);
+			
+			for (int i = 0; i < current.size; i++) {
+				final int id = current.ids[i];
+				
+				if (filter == null || filter.test(id)) {
+					final int[] values = current.fields[i];
+					final int[] copy = view.append(id, values.length);
+					
+					System.arraycopy(values, 0, copy, 0, values.length);
+				}
+			}
+			
+			return view;
+		}
+		
+		/**
+		 * Sets a filter which decides what entities get replicated to this client (e.g. an InterestArea).
+		 * Entities that stop passing the filter are removed on the client; they are created again once they pass it.
+		 * Once a filter has been set, the client keeps its own snapshot history, even if the filter is removed again.
+		 * A new filter takes effect with the next snapshot.
+		 * @param filter The filter, tested with the entity ids; null to replicate everything
+		 */
+		public void setFilter(final IntPredicate filter) {
+			this.filter = filter;
+			
+			if (history == null) {
+				history = Snapshot.createHistory();
+				ackedTick = NO_TICK;
+			}
+		}
+		
+		/**
+		 * Returns the last tick the client has acknowledged.
+		 * @return The tick or NO_TICK
+		 */
+		public int getAckedTick() {
+			return ackedTick;
+		}
+		
+	}
+	
+}
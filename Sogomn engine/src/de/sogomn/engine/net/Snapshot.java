@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.util.Arrays;
+
+/**
+ * Holds the field values of all replicated entities at one tick.
+ * The entries are sorted by their ids. The arrays are reused when the snapshot gets overwritten.
+ * @author Sogomn
+ *
+ */
+final class Snapshot {
+	
+	int tick;
+	int size;
+	int[] ids;
+	int[][] fields;
+	
+	/**
+	 * The amount of snapshots kept by both sides.
+	 */
+	static final int HISTORY_SIZE = 32;
+	
+	static final int TYPE_UPDATE = 0;
+	static final int TYPE_CREATE = 1;
+	static final int TYPE_REMOVE = 2;
+	static final int TYPE_BITS = 2;
+	
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int[] NO_FIELDS = new int[0];
+	
+	public Snapshot() {
+		tick = Replicator.NO_TICK;
+		ids = new int[DEFAULT_CAPACITY];
+		fields = new int[DEFAULT_CAPACITY][];
+	}
+	
+	void clear(final int tick) {
+		this.tick = tick;
+		
+		size = 0;
+	}
+	
+	/**
+	 * Appends an entry and returns its (possibly reused) field array.
+	 * The ids must be appended in ascending order.
+	 */
+	int[] append(final int id, final int fieldCount) {
+		if (size == ids.length) {
+			ids = Arrays.copyOf(ids, size * 2);
+			fields = Arrays.copyOf(fields, size * 2);
+		}
+		
+		int[] values = fields[size];
+		
+		if (values == null || values.length != fieldCount) {
+			values = fieldCount == 0 ? NO_FIELDS : new int[fieldCount];
+			fields[size] = values;
+		}
+		
+		ids[size] = id;
+		size++;
+		
+		return values;
+	}
+	
+	int indexOf(final int id) {
+		return Arrays.binarySearch(ids, 0, size, id);
+	}
+	
+	static Snapshot[] createHistory() {
+		final Snapshot[] history = new Snapshot[HISTORY_SIZE];
+		
+		for (int i = 0; i < HISTORY_SIZE; i++) {
+			history[i] = new Snapshot();
+		}
+		
+		return history;
+	}
+	
+	static Snapshot find(final Snapshot[] history, final int tick) {
+		if (tick == Replicator.NO_TICK) {
+			return null;
+		}
+		
+		final Snapshot snapshot = history[Math.floorMod(tick, HISTORY_SIZE)];
+		
+		return snapshot.tick == tick ? snapshot : null;
+	}
+	
+}
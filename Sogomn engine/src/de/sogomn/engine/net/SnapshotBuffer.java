@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.util.HashMap;
+
+import de.sogomn.engine.IUpdatable;
+
+/**
+ * A jitter buffer for the states of remote entities.
+ * Timestamped states received from the server are buffered per entity and interpolated at a render time
+ * which runs a fixed delay behind the newest state. This way entities move smoothly even if states arrive irregularly.
+ * The render time is advanced by "update" and slowly corrected towards the newest state minus the delay.
+ * This class is not thread-safe.
+ * @author Sogomn
+ *
+ */
+public final class SnapshotBuffer implements IUpdatable {
+	
+	private HashMap<Integer, Track> tracks;
+	private double delay;
+	private double renderTime, newestTime;
+	private boolean empty;
+	
+	private static final double DEFAULT_DELAY = 0.1;
+	private static final int CAPACITY = 32;
+	private static final double CORRECTION_RATE = 2;
+	private static final double SNAP_THRESHOLD = 0.5;
+	
+	/**
+	 * Constructs a new SnapshotBuffer object.
+	 * @param delay The interpolation delay in seconds; should be at least two server send intervals
+	 */
+	public SnapshotBuffer(final double delay) {
+		this.delay = delay;
+		
+		tracks = new HashMap<Integer, Track>();
+		empty = true;
+	}
+	
+	/**
+	 * Constructs a new SnapshotBuffer object with a delay of 100 milliseconds.
+	 */
+	public SnapshotBuffer() {
+		this(DEFAULT_DELAY);
+	}
+	
+	/**
+	 * Advances the render time and corrects its drift.
+	 * @param delta The time passed in seconds
+	 */
+	@Override
+	public void update(final double delta) {
+		if (empty) {
+			return;
+		}
+		
+		final double target = newestTime - delay;
+		
+		renderTime += delta;
+		
+		final double error = target - renderTime;
+		
+		if (Math.abs(error) > SNAP_THRESHOLD) {
+			renderTime = target;
+		} else {
+			renderTime += error * Math.min(delta * CORRECTION_RATE, 1);
+		}
+	}
+	
+	/**
+	 * Adds a state of an entity. States older than the newest one of the entity are ignored.
+	 * @param time The server time of the state in seconds (e.g. the tick times the tick length)
+	 * @param id The entity id
+	 * @param values The state, e.g. the position; copied
+	 */
+	public void add(final double time, final int id, final double... values) {
+		Track track = tracks.get(id);
+		
+		if (track == null) {
+			track = new Track(values.length);
+			
+			tracks.put(id, track);
+		}
+		
+		track.add(time, values);
+		
+		if (empty) {
+			renderTime = time - delay;
+			newestTime = time;
+			empty = false;
+		} else {
+			newestTime = Math.max(newestTime, time);
+		}
+	}
+	
+	/**
+	 * Adds the state of a replicated entity.
+	 * @param time The server time of the state in seconds
+	 * @param id The entity id
+	 * @param entity The entity whose fields are added
+	 */
+	public void add(final double time, final int id, final IReplicable entity) {
+		final double[] values = new double[entity.getFieldCount()];
+		
+		for (int i = 0; i < values.length; i++) {
+			values[i] = entity.getField(i);
+		}
+		
+		add(time, id, values);
+	}
+	
+	/**
+	 * Interpolates the state of an entity at the current render time.
+	 * Before the oldest and after the newest buffered state the respective state is used.
+	 * @param id The entity id
+	 * @param target The array the state is written to
+	 * @return True if the entity is known, false otherwise
+	 */
+	public boolean sample(final int id, final double[] target) {
+		return sample(id, renderTime, target);
+	}
+	
+	/**
+	 * Interpolates the state of an entity at the given time.
+	 * @param id The entity id
+	 * @param time The server time in seconds
+	 * @param target The array the state is written to
+	 * @return True if the entity is known, false otherwise
+	 */
+	public boolean sample(final int id, final double time, final double[] target) {
+		final Track track = tracks.get(id);
+		
+		if (track == null) {
+			return false;
+		}
+		
+		track.sample(time, target);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes an entity.
+	 * @param id The entity id
+	 */
+	public void remove(final int id) {
+		tracks.remove(id);
+	}
+	
+	/**
+	 * Removes all entities and resets the render time.
+	 */
+	public void clear() {
+		tracks.clear();
+		
+		empty = true;
+	}
+	
+	/**
+	 * Sets the interpolation delay.
+	 * @param delay The delay in seconds
+	 */
+	public void setDelay(final double delay) {
+		this.delay = delay;
+	}
+	
+	/**
+	 * Returns the interpolation delay.
+	 * @return The delay in seconds
+	 */
+	public double getDelay() {
+		return delay;
+	}
+	
+	/**
+	 * Returns the server time the entities are currently interpolated at.
+	 * @return The render time in seconds
+	 */
+	public double getRenderTime() {
+		return renderTime;
+	}
+	
+	/**
+	 * Returns the time of the newest state.
+	 * @return The time in seconds
+	 */
+	public double getNewestTime() {
+		return newestTime;
+	}
+	
+	/**
+	 * Returns the amount of entities.
+	 * @return The entity count
+	 */
+	public int size() {
+		return tracks.size();
+	}
+	
+	private static final class Track {
+		
+		private final double[] times;
+		private final double[][] states;
+		private int start, size;
+		
+		public Track(final int fieldCount) {
+			times = new double[CAPACITY];
+			states = new double[CAPACITY][fieldCount];
+		}
+		
+		private int index(final int i) {
+			return (start + i) % CAPACITY;
+		}
+		
+		public void add(final double time, final double[] values) {
+			if (size > 0 && time <= times[index(size - 1)]) {
+				return;
+			}
+			
+			final int index;
+			
+			if (size == CAPACITY) {
+				index = start;
+				start = index(1);
+			} else {
+				index = index(size);
+				size++;
+			}
+			
+			final int length = Math.min(values.length, states[index].length);
+			
+			times[index] = time;
+			System.arraycopy(values, 0, states[index], 0, length);
+		}
+		
+		public void sample(final double time, final double[] target) {
+			final int fieldCount = Math.min(target.length, states[start].length);
+			final int last = index(size - 1);
+			
+			if (time <= times[start]) {
+				System.arraycopy(states[start], 0, target, 0, fieldCount);
+				
+				return;
+			} else if (time >= times[last]) {
+				System.arraycopy(states[last], 0, target, 0, fieldCount);
+				
+				return;
+			}
+			
+			int i = size - 2;
+			
+			while (times[index(i)] > time) {
+				i--;
+			}
+			
+			final int from = index(i);
+			final int to = index(i + 1);
+			final double t = (time - times[from]) / (times[to] - times[from]);
+			
+			for (int j = 0; j < fieldCount; j++) {
+				final double a = states[from][j];
+				final double b = states[to][j];
+				
+				target[j] = a + (b - a) * t;
+			}
+		}
+		
+	}
+	
+}
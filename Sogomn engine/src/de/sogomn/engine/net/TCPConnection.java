@@ -18,11 +18,35 @@ package de.sogomn.engine.net;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import de.sogomn.engine.net.OutboundQueue.OverflowPolicy;
 
 /**
  * TCPConnection is for communication between a client and a server.
+ * The write methods are synchronous. Frames passed to "enqueue" are sent by a separate writer thread instead,
+ * so a slow receiver does not block the caller. Pings and their answers are queued in front of the other frames.
+ * Only the socket writes share a lock, so configuring the connection never waits for a slow receiver.
+ * Ping frames sent with "ping" are answered transparently by "readFrame" and "readMessage" of the other side.
+ * The answers are used to measure the smoothed round trip time and its jitter.
+ * Frames and messages above a configurable size can be compressed, optionally with a preset dictionary.
+ * Files can be streamed in resumable, checksummed chunks with "sendFile" and "receiveFile".
  * @author Sogomn
  *
  */
@@ -34,8 +58,63 @@ public class TCPConnection implements IClosable {
 	private Socket socket;
 	private DataInputStream in;
 	private DataOutputStream out;
+	private WritableByteChannel outChannel;
+	
+	private ByteBuffer encodeBuffer, decodeBuffer;
+	private OutboundQueue outbound;
+	private OverflowPolicy overflowPolicy;
+	private volatile Thread writer;
+	private final Object outputLock = new Object();
+	
+	private volatile long bytesSent, bytesReceived;
+	private volatile long messagesSent, messagesReceived;
+	private volatile long lastReceived;
+	private volatile double roundTripTime, roundTripVariance;
+	
+	private FrameCompressor compressor;
+	private boolean compressedFrame;
+	private byte[] fileBuffer;
+	private ByteBuffer fileChunk;
+	private volatile int maxFrameLength;
+	
+	private volatile boolean open;
+	
+	private static final int DEFAULT_BUFFER_SIZE = 1024;
+	private static final int DEFAULT_QUEUE_CAPACITY = 256;
+	private static final int BATCH_SIZE = 64;
+	private static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+	
+	/**
+	 * Compression threshold which disables compression.
+	 */
+	public static final int NO_COMPRESSION = -1;
+	
+	/*
+	 * Control frames use negative lengths so they can not be mistaken for data frames.
+	 * They are followed by a long containing the send time of the ping.
+	 */
+	static final int PING = -1;
+	static final int PONG = -2;
+	static final int CONTROL_PAYLOAD_SIZE = Long.BYTES;
+	
+	/*
+	 * Compressed frames are followed by the original length, the compressed length and the compressed data.
+	 */
+	static final int COMPRESSED = -3;
+	
+	/*
+	 * File transfers are followed by the file size, the start offset and the chunks.
+	 * Each chunk consists of its length, its CRC32 checksum and the data.
+	 */
+	static final int FILE = -4;
+	static final int FILE_CHUNK_SIZE = 256 * 1024;
 	
-	private boolean open;
+	/*
+	 * Smoothing factors of the round trip time and its variance (as used by TCP)
+	 */
+	private static final double RTT_ALPHA = 0.125;
+	private static final double RTT_BETA = 0.25;
+	private static final double NANOSECONDS_PER_SECOND = 1_000_000_000.0;
 	
 	/**
 	 * Constructs a new TCPConnection object. The internal socket will automatically connect.
@@ -46,6 +125,13 @@ public class TCPConnection implements IClosable {
 		this.address = address;
 		this.port = port;
 		
+		outbound = new OutboundQueue(DEFAULT_QUEUE_CAPACITY);
+		overflowPolicy = OverflowPolicy.BLOCK;
+		roundTripTime = Double.NaN;
+		roundTripVariance = Double.NaN;
+		compressor = new FrameCompressor();
+		maxFrameLength = DEFAULT_MAX_FRAME_LENGTH;
+		
 		try {
 			socket = new Socket(address, port);
 			localPort = socket.getLocalPort();
@@ -66,6 +152,12 @@ public class TCPConnection implements IClosable {
 		address = socket.getInetAddress().getHostAddress();
 		port = socket.getPort();
 		localPort = socket.getLocalPort();
+		outbound = new OutboundQueue(DEFAULT_QUEUE_CAPACITY);
+		overflowPolicy = OverflowPolicy.BLOCK;
+		roundTripTime = Double.NaN;
+		roundTripVariance = Double.NaN;
+		compressor = new FrameCompressor();
+		maxFrameLength = DEFAULT_MAX_FRAME_LENGTH;
 		
 		try {
 			initIO(socket);
@@ -75,11 +167,183 @@ public class TCPConnection implements IClosable {
 	}
 	
 	private void initIO(final Socket socket) throws IOException {
-		in = new DataInputStream(socket.getInputStream());
-		out = new DataOutputStream(socket.getOutputStream());
+		in = new DataInputStream(new CountingInputStream(socket.getInputStream()));
+		out = new DataOutputStream(new CountingOutputStream(socket.getOutputStream()));
+		outChannel = Channels.newChannel(out);
+		lastReceived = System.nanoTime();
 		open = true;
 	}
 	
+	private void writeQueued() {
+		final ByteBuffer[] batch = new ByteBuffer[BATCH_SIZE];
+		
+		while (open) {
+			final int count;
+			
+			try {
+				count = outbound.drainTo(batch);
+			} catch (final InterruptedException ex) {
+				break;
+			}
+			
+			if (count < 0) {
+				break;
+			}
+			
+			try {
+				synchronized (outputLock) {
+					for (int i = 0; i < count; i++) {
+						final ByteBuffer frame = batch[i];
+						
+						while (frame.hasRemaining()) {
+							outChannel.write(frame);
+						}
+					}
+					
+					out.flush();
+					messagesSent += count;
+				}
+			} catch (final Exception ex) {
+				handleException(ex);
+			} finally {
+				outbound.completed(count);
+				Arrays.fill(batch, 0, count, null);
+			}
+		}
+	}
+	
+	private synchronized void startWriter() {
+		if (writer != null) {
+			return;
+		}
+		
+		writer = new Thread(this::writeQueued, "TCPConnection writer " + address + ":" + port);
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/*
+	 * Control frames are put in front of the outbound queue and written by the writer thread, so neither the caller
+	 * nor the reading thread ever blocks on the socket. The queue caps them, so pings flooded by the other side
+	 * are left unanswered instead of piling up.
+	 */
+	private void enqueueControl(final int type, final long time) {
+		if (!open) {
+			return;
+		}
+		
+		if (writer == null) {
+			startWriter();
+		}
+		
+		final ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + CONTROL_PAYLOAD_SIZE);
+		
+		frame.putInt(type);
+		frame.putLong(time);
+		frame.flip();
+		
+		outbound.offerFirst(frame);
+	}
+	
+	private void updateRoundTripTime(final double sample) {
+		if (Double.isNaN(roundTripTime)) {
+			roundTripTime = sample;
+			roundTripVariance = sample / 2;
+		} else {
+			roundTripVariance = (1 - RTT_BETA) * roundTripVariance + RTT_BETA * Math.abs(roundTripTime - sample);
+			roundTripTime = (1 - RTT_ALPHA) * roundTripTime + RTT_ALPHA * sample;
+		}
+	}
+	
+	private void writeFrameData(final byte[] data, final int offset, final int length) throws IOException {
+		if (compressor.shouldCompress(length)) {
+			final int compressedLength = compressor.deflate(data, offset, length);
+			
+			if (compressedLength >= 0) {
+				out.writeInt(COMPRESSED);
+				out.writeInt(length);
+				out.writeInt(compressedLength);
+				out.write(compressor.getOutput(), 0, compressedLength);
+				
+				return;
+			}
+		}
+		
+		out.writeInt(length);
+		out.write(data, offset, length);
+	}
+	
+	/*
+	 * Reads headers until one follows which is not a ping or pong, answering pings on the way.
+	 */
+	private int readHeader() throws IOException {
+		while (true) {
+			final int header = in.readInt();
+			
+			if (header != PING && header != PONG) {
+				return header;
+			}
+			
+			final long time = in.readLong();
+			
+			if (header == PING) {
+				enqueueControl(PONG, time);
+			} else {
+				updateRoundTripTime((System.nanoTime() - time) / NANOSECONDS_PER_SECOND);
+			}
+		}
+	}
+	
+	private void checkFrameLength(final int length) throws IOException {
+		if (length < 0 || length > maxFrameLength) {
+			throw new IOException("Invalid frame length: " + length);
+		}
+	}
+	
+	/*
+	 * Reads the header of the next data frame and returns the (uncompressed) length of its data.
+	 */
+	private int readFrameLength() throws IOException {
+		final int length = readHeader();
+		
+		if (length >= 0) {
+			checkFrameLength(length);
+			
+			messagesReceived++;
+			compressedFrame = false;
+			
+			return length;
+		} else if (length == COMPRESSED) {
+			final int originalLength = in.readInt();
+			
+			checkFrameLength(originalLength);
+			
+			messagesReceived++;
+			compressedFrame = true;
+			
+			return originalLength;
+		}
+		
+		throw new IOException("Invalid frame length: " + length);
+	}
+	
+	private void readFrameData(final byte[] target, final int length) throws IOException {
+		if (!compressedFrame) {
+			in.readFully(target, 0, length);
+			
+			return;
+		}
+		
+		final int compressedLength = in.readInt();
+		
+		checkFrameLength(compressedLength);
+		
+		final byte[] data = compressor.getInput(compressedLength);
+		
+		in.readFully(data, 0, compressedLength);
+		compressor.inflate(data, compressedLength, target, 0, length);
+	}
+	
 	/**
 	 * This method gets called when an exeption occurs. The default implementation prints the error and closes the connection.
 	 * @param ex The exception that has been thrown
@@ -107,6 +371,8 @@ public class TCPConnection implements IClosable {
 		}
 		
 		open = false;
+		outbound.close();
+		compressor.end();
 		
 		try {
 			in.close();
@@ -147,11 +413,14 @@ public class TCPConnection implements IClosable {
 	 * @param data The data to be sent
 	 */
 	public void write(final byte[] data) {
-		try {
-			out.write(data);
-			out.flush();
-		} catch (final Exception ex) {
-			handleException(ex);
+		synchronized (outputLock) {
+			try {
+				out.write(data);
+				out.flush();
+				messagesSent++;
+			} catch (final Exception ex) {
+				handleException(ex);
+			}
 		}
 	}
 	
@@ -160,11 +429,14 @@ public class TCPConnection implements IClosable {
 	 * @param i The integer to be sent
 	 */
 	public void writeInt(final int i) {
-		try {
-			out.writeInt(i);
-			out.flush();
-		} catch (final Exception ex) {
-			handleException(ex);
+		synchronized (outputLock) {
+			try {
+				out.writeInt(i);
+				out.flush();
+				messagesSent++;
+			} catch (final Exception ex) {
+				handleException(ex);
+			}
 		}
 	}
 	
@@ -173,11 +445,14 @@ public class TCPConnection implements IClosable {
 	 * @param b The byte to be written
 	 */
 	public void writeByte(final byte b) {
-		try {
-			out.writeByte(b);
-			out.flush();
-		} catch (final Exception ex) {
-			handleException(ex);
+		synchronized (outputLock) {
+			try {
+				out.writeByte(b);
+				out.flush();
+				messagesSent++;
+			} catch (final Exception ex) {
+				handleException(ex);
+			}
 		}
 	}
 	
@@ -186,11 +461,14 @@ public class TCPConnection implements IClosable {
 	 * @param message The string to be written
 	 */
 	public void writeUtf(final String message) {
-		try {
-			out.writeUTF(message);
-			out.flush();
-		} catch (final Exception ex) {
-			handleException(ex);
+		synchronized (outputLock) {
+			try {
+				out.writeUTF(message);
+				out.flush();
+				messagesSent++;
+			} catch (final Exception ex) {
+				handleException(ex);
+			}
 		}
 	}
 	
@@ -199,11 +477,14 @@ public class TCPConnection implements IClosable {
 	 * @param l The long to be sent
 	 */
 	public void writeLong(final long l) {
-		try {
-			out.writeLong(l);
-			out.flush();
-		} catch (final Exception ex) {
-			handleException(ex);
+		synchronized (outputLock) {
+			try {
+				out.writeLong(l);
+				out.flush();
+				messagesSent++;
+			} catch (final Exception ex) {
+				handleException(ex);
+			}
 		}
 	}
 	
@@ -212,11 +493,14 @@ public class TCPConnection implements IClosable {
 	 * @param s The short to be sent
 	 */
 	public void writeShort(final short s) {
-		try {
-			out.writeShort(s);
-			out.flush();
-		} catch (final Exception ex) {
-			handleException(ex);
+		synchronized (outputLock) {
+			try {
+				out.writeShort(s);
+				out.flush();
+				messagesSent++;
+			} catch (final Exception ex) {
+				handleException(ex);
+			}
 		}
 	}
 	
@@ -228,6 +512,7 @@ public class TCPConnection implements IClosable {
 	public void read(final byte[] buffer) {
 		try {
 			in.readFully(buffer);
+			messagesReceived++;
 		} catch (final Exception ex) {
 			handleException(ex);
 		}
@@ -241,6 +526,8 @@ public class TCPConnection implements IClosable {
 		try {
 			final int i = in.readInt();
 			
+			messagesReceived++;
+			
 			return i;
 		} catch (final Exception ex) {
 			handleException(ex);
@@ -257,6 +544,8 @@ public class TCPConnection implements IClosable {
 		try {
 			final byte b = in.readByte();
 			
+			messagesReceived++;
+			
 			return b;
 		} catch (final Exception ex) {
 			handleException(ex);
@@ -273,6 +562,8 @@ public class TCPConnection implements IClosable {
 		try {
 			final String message = in.readUTF();
 			
+			messagesReceived++;
+			
 			return message;
 		} catch (final Exception ex) {
 			handleException(ex);
@@ -289,6 +580,8 @@ public class TCPConnection implements IClosable {
 		try {
 			final long l = in.readLong();
 			
+			messagesReceived++;
+			
 			return l;
 		} catch (final Exception ex) {
 			handleException(ex);
@@ -305,6 +598,8 @@ public class TCPConnection implements IClosable {
 		try {
 			final short s = in.readShort();
 			
+			messagesReceived++;
+			
 			return s;
 		} catch (final Exception ex) {
 			handleException(ex);
@@ -313,6 +608,498 @@ public class TCPConnection implements IClosable {
 		}
 	}
 	
+	/**
+	 * Writes a frame to the output stream.
+	 * A frame consists of the length of the data as an integer followed by the data itself.
+	 * The frame gets compressed if compression is enabled and the data is large enough.
+	 * @param data The data to be sent
+	 */
+	public void writeFrame(final byte[] data) {
+		synchronized (outputLock) {
+			try {
+				writeFrameData(data, 0, data.length);
+				out.flush();
+				messagesSent++;
+			} catch (final Exception ex) {
+				handleException(ex);
+			}
+		}
+	}
+	
+	/**
+	 * Reads the next frame from the input stream.
+	 * This will block the thread until the whole frame has been received. Pings received in the meantime are answered.
+	 * @return The frame data or null in case of failure
+	 */
+	public byte[] readFrame() {
+		try {
+			final int length = readFrameLength();
+			final byte[] data = new byte[length];
+			
+			readFrameData(data, length);
+			
+			return data;
+		} catch (final Exception ex) {
+			handleException(ex);
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * Encodes the message with the given codec and writes it as a frame.
+	 * The message is encoded into a buffer which is reused for every message.
+	 * The frame gets compressed if compression is enabled and the message is large enough.
+	 * @param codec The codec
+	 * @param message The message
+	 */
+	public void writeMessage(final MessageCodec codec, final Object message) {
+		synchronized (outputLock) {
+			try {
+				if (encodeBuffer == null) {
+					encodeBuffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+				}
+				
+				while (true) {
+					encodeBuffer.clear();
+					
+					try {
+						codec.encode(message, encodeBuffer);
+						
+						break;
+					} catch (final BufferOverflowException ex) {
+						encodeBuffer = ByteBuffer.allocate(encodeBuffer.capacity() * 2);
+					}
+				}
+				
+				final int length = encodeBuffer.position();
+				
+				writeFrameData(encodeBuffer.array(), 0, length);
+				out.flush();
+				messagesSent++;
+			} catch (final Exception ex) {
+				handleException(ex);
+			}
+		}
+	}
+	
+	/**
+	 * Reads the next frame and decodes it with the given codec.
+	 * The frame is read into a buffer which is reused for every message. Pings received in the meantime are answered.
+	 * @param codec The codec
+	 * @return The message or null in case of failure
+	 */
+	public Object readMessage(final MessageCodec codec) {
+		try {
+			final int length = readFrameLength();
+			
+			if (decodeBuffer == null || decodeBuffer.capacity() < length) {
+				decodeBuffer = ByteBuffer.allocate(Math.max(length, DEFAULT_BUFFER_SIZE));
+			}
+			
+			readFrameData(decodeBuffer.array(), length);
+			decodeBuffer.clear();
+			decodeBuffer.limit(length);
+			
+			return codec.decode(decodeBuffer);
+		} catch (final Exception ex) {
+			handleException(ex);
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * Streams a file to the other side, which has to receive it with "receiveFile".
+	 * The file is sent in chunks with a checksum each. It is never loaded as a whole; every chunk is read once into
+	 * a direct buffer which is reused for the whole connection, checksummed and then written from there.
+	 * This is not a zero-copy transfer. If the socket has a channel, the buffer is written to it without another copy.
+	 * Other writes to this connection are blocked until the transfer is finished.
+	 * @param path The file
+	 * @param offset The position to start at, e.g. the size of a partially received file; zero to send the whole file
+	 * @return The amount of file bytes sent or -1 in case of failure
+	 */
+	public long sendFile(final Path path, final long offset) {
+		synchronized (outputLock) {
+			try (final FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+				final long size = file.size();
+				
+				if (offset < 0 || offset > size) {
+					throw new IOException("Invalid file offset: " + offset);
+				}
+				
+				final SocketChannel channel = socket.getChannel();
+				final CRC32 checksum = new CRC32();
+				
+				if (fileChunk == null) {
+					fileChunk = ByteBuffer.allocateDirect(FILE_CHUNK_SIZE);
+				}
+				
+				out.writeInt(FILE);
+				out.writeLong(size);
+				out.writeLong(offset);
+				
+				long position = offset;
+				
+				while (position < size) {
+					final int length = (int)Math.min(FILE_CHUNK_SIZE, size - position);
+					
+					fileChunk.clear();
+					fileChunk.limit(length);
+					
+					while (fileChunk.hasRemaining()) {
+						if (file.read(fileChunk, position + fileChunk.position()) < 0) {
+							throw new IOException("File shrank during the transfer");
+						}
+					}
+					
+					fileChunk.flip();
+					checksum.reset();
+					checksum.update(fileChunk);
+					fileChunk.rewind();
+					
+					out.writeInt(length);
+					out.writeInt((int)checksum.getValue());
+					
+					if (channel == null) {
+						while (fileChunk.hasRemaining()) {
+							outChannel.write(fileChunk);
+						}
+					} else {
+						out.flush();
+						
+						while (fileChunk.hasRemaining()) {
+							channel.write(fileChunk);
+						}
+						
+						bytesSent += length;
+					}
+					
+					position += length;
+				}
+				
+				out.flush();
+				messagesSent++;
+				
+				return size - offset;
+			} catch (final Exception ex) {
+				handleException(ex);
+				
+				return -1;
+			}
+		}
+	}
+	
+	/**
+	 * Receives a file sent with "sendFile" and writes it directly to the given path.
+	 * The data before the offset chosen by the sender is kept, the rest of the file is replaced.
+	 * Every chunk is verified with its checksum before it is written, so after a failure the size of the file
+	 * (see "getResumeOffset") is the offset to resume the transfer from.
+	 * Pings received before the file are answered.
+	 * @param path The target file
+	 * @return The size of the complete file or -1 in case of failure
+	 */
+	public long receiveFile(final Path path) {
+		try (final FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			final int header = readHeader();
+			
+			if (header != FILE) {
+				throw new IOException("Expected a file but got frame header " + header);
+			}
+			
+			final long size = in.readLong();
+			final long offset = in.readLong();
+			
+			if (offset < 0 || offset > size || offset > file.size()) {
+				throw new IOException("Invalid file offset: " + offset);
+			}
+			
+			file.truncate(offset);
+			messagesReceived++;
+			
+			if (fileBuffer == null) {
+				fileBuffer = new byte[FILE_CHUNK_SIZE];
+			}
+			
+			final ByteBuffer chunk = ByteBuffer.wrap(fileBuffer);
+			final CRC32 checksum = new CRC32();
+			
+			long position = offset;
+			
+			while (position < size) {
+				final int length = in.readInt();
+				final int expected = in.readInt();
+				
+				if (length <= 0 || length > FILE_CHUNK_SIZE || length > size - position) {
+					throw new IOException("Invalid chunk length: " + length);
+				}
+				
+				in.readFully(fileBuffer, 0, length);
+				checksum.reset();
+				checksum.update(fileBuffer, 0, length);
+				
+				if ((int)checksum.getValue() != expected) {
+					throw new IOException("Checksum mismatch at offset " + position);
+				}
+				
+				chunk.clear();
+				chunk.limit(length);
+				
+				while (chunk.hasRemaining()) {
+					position += file.write(chunk, position);
+				}
+			}
+			
+			return size;
+		} catch (final Exception ex) {
+			handleException(ex);
+			
+			return -1;
+		}
+	}
+	
+	/**
+	 * Returns the offset a file transfer to the given path should be resumed from.
+	 * @param path The target file
+	 * @return The size of the file or zero if it does not exist
+	 */
+	public static long getResumeOffset(final Path path) {
+		try {
+			return Files.exists(path) ? Files.size(path) : 0;
+		} catch (final IOException ex) {
+			ex.printStackTrace();
+			
+			return 0;
+		}
+	}
+	
+	/**
+	 * Queues an encoded frame to be sent by the writer thread of this connection, applying the default overflow policy.
+	 * The default policy is BLOCK, so no frame is lost but the caller waits while the queue is full.
+	 * If it has been set to DROP_OLDEST, older frames may be discarded silently to make room; see "getDroppedFrames".
+	 * The buffer is not copied; only a view with its own position is queued.
+	 * This makes it possible to queue the same read-only buffer on many connections.
+	 * @param frame The frame, from its position to its limit
+	 * @return True if the frame has been queued; false if it has been dropped
+	 */
+	public boolean enqueue(final ByteBuffer frame) {
+		return enqueue(frame, overflowPolicy);
+	}
+	
+	/**
+	 * Queues an encoded frame to be sent by the writer thread of this connection.
+	 * The writer thread is started with the first frame. If the queue is full the given policy is applied.
+	 * The DISCONNECT policy closes the connection.
+	 * @param frame The frame, from its position to its limit
+	 * @param policy The overflow policy
+	 * @return True if the frame has been queued (DROP_OLDEST may have discarded an older frame for it); false if it has been dropped
+	 */
+	public boolean enqueue(final ByteBuffer frame, final OverflowPolicy policy) {
+		if (!open) {
+			return false;
+		}
+		
+		if (writer == null) {
+			startWriter();
+		}
+		
+		final boolean queued = outbound.offer(frame.duplicate(), policy);
+		
+		if (!queued && policy == OverflowPolicy.DISCONNECT && open) {
+			handleException(new IOException("Outbound queue overflow"));
+		}
+		
+		return queued;
+	}
+	
+	/**
+	 * Blocks until all queued frames have been written or the connection has been closed.
+	 */
+	public void flush() {
+		try {
+			outbound.awaitEmpty();
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Sets the maximum amount of queued frames.
+	 * @param capacity The capacity
+	 */
+	public void setQueueCapacity(final int capacity) {
+		outbound.setCapacity(capacity);
+	}
+	
+	/**
+	 * Sets the overflow policy used by "enqueue" if no policy is passed.
+	 * The default is BLOCK, which never loses frames. Broadcasts of a ConnectionGroup drop old frames instead.
+	 * @param overflowPolicy The policy
+	 */
+	public void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+	
+	/**
+	 * Returns the default overflow policy.
+	 * @return The policy
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+	
+	/**
+	 * Returns the number of frames waiting to be sent.
+	 * @return The queue depth
+	 */
+	public int getQueuedFrames() {
+		return outbound.size();
+	}
+	
+	/**
+	 * Returns the highest number of frames that have been waiting to be sent at once.
+	 * @return The peak queue depth
+	 */
+	public int getPeakQueuedFrames() {
+		return outbound.getPeakSize();
+	}
+	
+	/**
+	 * Returns the number of frames that have been dropped because the queue was full.
+	 * @return The dropped frame count
+	 */
+	public long getDroppedFrames() {
+		return outbound.getDropped();
+	}
+	
+	/**
+	 * Queues a ping frame in front of all other queued frames.
+	 * It is written by the writer thread, so this method never blocks.
+	 * The other side answers it the next time it reads a frame or message.
+	 * The answer is processed the next time this connection reads a frame or message.
+	 */
+	public void ping() {
+		enqueueControl(PING, System.nanoTime());
+	}
+	
+	/**
+	 * Sets the maximum length of incoming frames and messages (before and after decompression). Longer frames close the connection.
+	 * The default is 16 MiB.
+	 * @param maxFrameLength The maximum length in bytes
+	 */
+	public void setMaxFrameLength(final int maxFrameLength) {
+		this.maxFrameLength = maxFrameLength;
+	}
+	
+	/**
+	 * Returns the maximum length of incoming frames.
+	 * @return The maximum length in bytes
+	 */
+	public int getMaxFrameLength() {
+		return maxFrameLength;
+	}
+	
+	/**
+	 * Sets the size in bytes from which on frames written by "writeFrame" and "writeMessage" get compressed.
+	 * Frames which would not get smaller are sent uncompressed. Compressed frames are always accepted by the read methods.
+	 * Frames queued with "enqueue" and raw writes are never compressed.
+	 * The default is NO_COMPRESSION.
+	 * @param threshold The threshold or NO_COMPRESSION
+	 */
+	public void setCompressionThreshold(final int threshold) {
+		compressor.setThreshold(threshold);
+	}
+	
+	/**
+	 * Sets the compression level.
+	 * @param level The level from 0 to 9 or -1 (Deflater.DEFAULT_COMPRESSION)
+	 * @throws IllegalArgumentException If the level is out of range
+	 */
+	public void setCompressionLevel(final int level) {
+		compressor.setLevel(level);
+	}
+	
+	/**
+	 * Sets the preset dictionary used to compress and decompress frames (e.g. one created by the DictionaryTrainer class).
+	 * Both sides have to use the same dictionary. It should be set before any compressed frame is sent or received.
+	 * @param dictionary The dictionary or null to use none
+	 */
+	public void setCompressionDictionary(final byte[] dictionary) {
+		compressor.setDictionary(dictionary);
+	}
+	
+	/**
+	 * Returns the size in bytes from which on frames get compressed.
+	 * @return The threshold or NO_COMPRESSION
+	 */
+	public int getCompressionThreshold() {
+		return compressor.getThreshold();
+	}
+	
+	/**
+	 * Returns a snapshot of the statistics of this connection.
+	 * @return The statistics
+	 */
+	public ConnectionStats getStats() {
+		return new ConnectionStats(this);
+	}
+	
+	/**
+	 * Returns the smoothed round trip time measured with pings.
+	 * @return The round trip time in seconds or NaN if no ping has been answered yet
+	 */
+	public double getRoundTripTime() {
+		return roundTripTime;
+	}
+	
+	/**
+	 * Returns the smoothed mean deviation of the round trip time.
+	 * @return The jitter in seconds or NaN if no ping has been answered yet
+	 */
+	public double getJitter() {
+		return roundTripVariance;
+	}
+	
+	/**
+	 * Returns the time since the last byte has been received.
+	 * @return The idle time in seconds
+	 */
+	public double getIdleTime() {
+		return (System.nanoTime() - lastReceived) / NANOSECONDS_PER_SECOND;
+	}
+	
+	/**
+	 * Returns the amount of bytes written to the socket, including frame headers and pings.
+	 * @return The byte count
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+	
+	/**
+	 * Returns the amount of bytes read from the socket, including frame headers and pings.
+	 * @return The byte count
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+	
+	/**
+	 * Returns the amount of messages sent. Every frame and every call of a write method counts as one message.
+	 * @return The message count
+	 */
+	public long getMessagesSent() {
+		return messagesSent;
+	}
+	
+	/**
+	 * Returns the amount of messages received. Every frame and every call of a read method counts as one message.
+	 * @return The message count
+	 */
+	public long getMessagesReceived() {
+		return messagesReceived;
+	}
+	
 	/**
 	 * Returns the number of available bytes in the input stream.
 	 * @return The available bytes
@@ -360,4 +1147,68 @@ public class TCPConnection implements IClosable {
 		return open;
 	}
 	
+	private final class CountingInputStream extends FilterInputStream {
+		
+		public CountingInputStream(final InputStream in) {
+			super(in);
+		}
+		
+		private void count(final long bytes) {
+			if (bytes > 0) {
+				bytesReceived += bytes;
+				lastReceived = System.nanoTime();
+			}
+		}
+		
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			
+			count(b < 0 ? 0 : 1);
+			
+			return b;
+		}
+		
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			final int read = super.read(b, off, len);
+			
+			count(read);
+			
+			return read;
+		}
+		
+		@Override
+		public long skip(final long n) throws IOException {
+			final long skipped = super.skip(n);
+			
+			count(skipped);
+			
+			return skipped;
+		}
+		
+	}
+	
+	private final class CountingOutputStream extends FilterOutputStream {
+		
+		public CountingOutputStream(final OutputStream out) {
+			super(out);
+		}
+		
+		@Override
+		public void write(final int b) throws IOException {
+			out.write(b);
+			
+			bytesSent++;
+		}
+		
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			out.write(b, off, len);
+			
+			bytesSent += len;
+		}
+		
+	}
+	
 }
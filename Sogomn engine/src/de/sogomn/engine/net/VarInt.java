@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class holds methods to write and read variable length integers to and from byte buffers.
+ * Values are written in groups of seven bits, the lowest group first. Small values take up fewer bytes.
+ * Signed values are zigzag encoded first so that small negative values stay small, too.
+ * @author Sogomn
+ *
+ */
+public final class VarInt {
+	
+	private static final int SEGMENT_BITS = 0x7f;
+	private static final int CONTINUE_BIT = 0x80;
+	
+	private VarInt() {
+		//...
+	}
+	
+	/**
+	 * Zigzag encodes the given integer.
+	 * @param value The value
+	 * @return The encoded value
+	 */
+	public static int encodeZigZag(final int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+	
+	/**
+	 * Decodes a zigzag encoded integer.
+	 * @param value The encoded value
+	 * @return The value
+	 */
+	public static int decodeZigZag(final int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	/**
+	 * Zigzag encodes the given long.
+	 * @param value The value
+	 * @return The encoded value
+	 */
+	public static long encodeZigZag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+	
+	/**
+	 * Decodes a zigzag encoded long.
+	 * @param value The encoded value
+	 * @return The value
+	 */
+	public static long decodeZigZag(final long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	/**
+	 * Writes an unsigned variable length integer.
+	 * @param buffer The buffer
+	 * @param value The value, interpreted as unsigned
+	 */
+	public static void putVarInt(final ByteBuffer buffer, int value) {
+		while ((value & ~SEGMENT_BITS) != 0) {
+			buffer.put((byte)((value & SEGMENT_BITS) | CONTINUE_BIT));
+			
+			value >>>= 7;
+		}
+		
+		buffer.put((byte)value);
+	}
+	
+	/**
+	 * Writes an unsigned variable length long.
+	 * @param buffer The buffer
+	 * @param value The value, interpreted as unsigned
+	 */
+	public static void putVarLong(final ByteBuffer buffer, long value) {
+		while ((value & ~SEGMENT_BITS) != 0) {
+			buffer.put((byte)((value & SEGMENT_BITS) | CONTINUE_BIT));
+			
+			value >>>= 7;
+		}
+		
+		buffer.put((byte)value);
+	}
+	
+	/**
+	 * Writes a zigzag encoded variable length integer.
+	 * @param buffer The buffer
+	 * @param value The value
+	 */
+	public static void putSignedVarInt(final ByteBuffer buffer, final int value) {
+		putVarInt(buffer, encodeZigZag(value));
+	}
+	
+	/**
+	 * Writes a zigzag encoded variable length long.
+	 * @param buffer The buffer
+	 * @param value The value
+	 */
+	public static void putSignedVarLong(final ByteBuffer buffer, final long value) {
+		putVarLong(buffer, encodeZigZag(value));
+	}
+	
+	/**
+	 * Reads an unsigned variable length integer.
+	 * @param buffer The buffer
+	 * @return The value
+	 * @throws IllegalStateException If the value is longer than five bytes
+	 */
+	public static int getVarInt(final ByteBuffer buffer) {
+		int value = 0;
+		
+		for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+			final byte b = buffer.get();
+			
+			value |= (b & SEGMENT_BITS) << shift;
+			
+			if ((b & CONTINUE_BIT) == 0) {
+				return value;
+			}
+		}
+		
+		throw new IllegalStateException("Malformed variable length integer");
+	}
+	
+	/**
+	 * Reads an unsigned variable length long.
+	 * @param buffer The buffer
+	 * @return The value
+	 * @throws IllegalStateException If the value is longer than ten bytes
+	 */
+	public static long getVarLong(final ByteBuffer buffer) {
+		long value = 0;
+		
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			final byte b = buffer.get();
+			
+			value |= (long)(b & SEGMENT_BITS) << shift;
+			
+			if ((b & CONTINUE_BIT) == 0) {
+				return value;
+			}
+		}
+		
+		throw new IllegalStateException("Malformed variable length long");
+	}
+	
+	/**
+	 * Reads a zigzag encoded variable length integer.
+	 * @param buffer The buffer
+	 * @return The value
+	 */
+	public static int getSignedVarInt(final ByteBuffer buffer) {
+		return decodeZigZag(getVarInt(buffer));
+	}
+	
+	/**
+	 * Reads a zigzag encoded variable length long.
+	 * @param buffer The buffer
+	 * @return The value
+	 */
+	public static long getSignedVarLong(final ByteBuffer buffer) {
+		return decodeZigZag(getVarLong(buffer));
+	}
+	
+	/**
+	 * Returns the amount of bytes the given unsigned value takes up.
+	 * @param value The value
+	 * @return The size in bytes (1 to 5)
+	 */
+	public static int sizeOf(final int value) {
+		final int bits = Integer.SIZE - Integer.numberOfLeadingZeros(value | 1);
+		
+		return (bits + 6) / 7;
+	}
+	
+}
@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.noise;
+
+import java.util.Arrays;
+
+/**
+ * Combines several octaves of another noise into fractal noise.
+ * Every octave samples its source with a frequency "lacunarity" times higher and an amplitude "gain" times lower than the previous one.
+ * A region fill evaluates every octave with the fill method of its source and accumulates the results in a scratch buffer
+ * which is reused by each thread. The octaves themselves are not cached; a NoiseCache can keep finished regions instead.
+ * Every thread keeps the scratch buffers of its largest fill of up to 65536 samples for the life of this object;
+ * larger fills use temporary buffers.
+ * A fill computes the coordinates of octave i as (x * frequency + shift) + column * (step * frequency) while "getValue"
+ * computes (x + column * step) * frequency + shift, so filled values may differ from single samples in the last bits.
+ * The settings should not be changed while another thread samples the noise.
+ * Generates values from 1 to -1.
+ * @author Sogomn
+ *
+ */
+public final class FractalNoise implements INoise2D {
+	
+	private final INoise2D[] octaves;
+	
+	private Mode mode;
+	private double frequency;
+	private double lacunarity;
+	private double gain;
+	private double octaveShift;
+	
+	private INoise2D warp;
+	private double warpStrength;
+	
+	private final ThreadLocal<Scratch> scratch;
+	
+	private static final double DEFAULT_FREQUENCY = 1;
+	private static final double DEFAULT_LACUNARITY = 2;
+	private static final double DEFAULT_GAIN = 0.5;
+	private static final double DEFAULT_OCTAVE_SHIFT = 101.37;
+	
+	/*
+	 * The second warp component is sampled far away from the first one so the two are not correlated
+	 */
+	private static final double WARP_OFFSET = 5197.31;
+	
+	private static final int MAX_KEPT_SCRATCH_SIZE = 256 * 256;
+	
+	/**
+	 * Constructs a new FractalNoise object with one source per octave.
+	 * The first source is the octave with the lowest frequency.
+	 * @param octaves The sources, at least one
+	 */
+	public FractalNoise(final INoise2D... octaves) {
+		if (octaves.length < 1) {
+			throw new IllegalArgumentException("At least one octave is needed");
+		}
+		
+		this.octaves = octaves.clone();
+		
+		scratch = ThreadLocal.withInitial(Scratch::new);
+		mode = Mode.FBM;
+		frequency = DEFAULT_FREQUENCY;
+		lacunarity = DEFAULT_LACUNARITY;
+		gain = DEFAULT_GAIN;
+	}
+	
+	/**
+	 * Constructs a new FractalNoise object which uses the same source for every octave.
+	 * The octaves are shifted against each other so they are not correlated. The source should therefore be unbounded (e.g. GradientNoise or SimplexNoise).
+	 * @param source The source
+	 * @param octaveCount The amount of octaves, at least one
+	 */
+	public FractalNoise(final INoise2D source, final int octaveCount) {
+		this(createOctaves(source, octaveCount));
+		
+		octaveShift = DEFAULT_OCTAVE_SHIFT;
+	}
+	
+	private static INoise2D[] createOctaves(final INoise2D source, final int octaveCount) {
+		if (octaveCount < 1) {
+			throw new IllegalArgumentException("At least one octave is needed: " + octaveCount);
+		}
+		
+		final INoise2D[] octaves = new INoise2D[octaveCount];
+		
+		Arrays.fill(octaves, source);
+		
+		return octaves;
+	}
+	
+	private double shape(final double value) {
+		if (mode == Mode.RIDGED) {
+			final double ridge = 1 - Math.abs(value);
+			
+			return ridge * ridge * 2 - 1;
+		} else if (mode == Mode.BILLOW) {
+			return Math.abs(value) * 2 - 1;
+		}
+		
+		return value;
+	}
+	
+	private double getAmplitudeSum() {
+		double amplitude = 1;
+		double sum = 0;
+		
+		for (int i = 0; i < octaves.length; i++) {
+			sum += amplitude;
+			amplitude *= gain;
+		}
+		
+		return sum;
+	}
+	
+	private double sample(final double x, final double y, final double amplitudeSum) {
+		double octaveFrequency = frequency;
+		double amplitude = 1;
+		double sum = 0;
+		
+		for (int i = 0; i < octaves.length; i++) {
+			final double shift = i * octaveShift;
+			final double value = octaves[i].getValue(x * octaveFrequency + shift, y * octaveFrequency + shift);
+			
+			sum += shape(value) * amplitude;
+			octaveFrequency *= lacunarity;
+			amplitude *= gain;
+		}
+		
+		return sum / amplitudeSum;
+	}
+	
+	private double warpedSample(final double x, final double y, final double amplitudeSum) {
+		final double warpX = warp.getValue(x, y) * warpStrength;
+		final double warpY = warp.getValue(x + WARP_OFFSET, y + WARP_OFFSET) * warpStrength;
+		
+		return sample(x + warpX, y + warpY, amplitudeSum);
+	}
+	
+	/**
+	 * Returns the fractal noise value at the given point.
+	 * @return A value from 1 to -1 (inclusive)
+	 */
+	@Override
+	public double getValue(final double x, final double y) {
+		final double amplitudeSum = getAmplitudeSum();
+		
+		if (warp != null) {
+			return warpedSample(x, y, amplitudeSum);
+		}
+		
+		return sample(x, y, amplitudeSum);
+	}
+	
+	/*Warped coordinates do not lie on a regular grid anymore, so the octaves are sampled one by one*/
+	private void fillWarped(final double[] doubles, final float[] floats, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		final double amplitudeSum = getAmplitudeSum();
+		final Scratch buffers = getScratch(width * height);
+		final double[] warpX = buffers.first;
+		final double[] warpY = buffers.second;
+		
+		warp.fill(warpX, x, y, step, width, height);
+		warp.fill(warpY, x + WARP_OFFSET, y + WARP_OFFSET, step, width, height);
+		
+		for (int row = 0; row < height; row++) {
+			final double sampleY = y + row * step;
+			final int rowIndex = row * width;
+			
+			for (int column = 0; column < width; column++) {
+				final int index = rowIndex + column;
+				final double sampleX = x + column * step;
+				final double value = sample(sampleX + warpX[index] * warpStrength, sampleY + warpY[index] * warpStrength, amplitudeSum);
+				
+				if (doubles != null) {
+					doubles[offset + index] = value;
+				} else {
+					floats[offset + index] = (float)value;
+				}
+			}
+		}
+	}
+	
+	private Scratch getScratch(final int size) {
+		if (size > MAX_KEPT_SCRATCH_SIZE) {
+			return new Scratch().ensureSize(size);
+		}
+		
+		return scratch.get().ensureSize(size);
+	}
+	
+	private void fill(final double[] doubles, final float[] floats, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		if (warp != null) {
+			fillWarped(doubles, floats, offset, x, y, step, width, height);
+			
+			return;
+		}
+		
+		final double amplitudeSum = getAmplitudeSum();
+		final int size = width * height;
+		final Scratch buffers = getScratch(size);
+		final double[] sum = buffers.first;
+		final double[] octave = buffers.second;
+		
+		Arrays.fill(sum, 0, size, 0);
+		
+		double octaveFrequency = frequency;
+		double amplitude = 1;
+		
+		for (int i = 0; i < octaves.length; i++) {
+			final double shift = i * octaveShift;
+			
+			octaves[i].fill(octave, x * octaveFrequency + shift, y * octaveFrequency + shift, step * octaveFrequency, width, height);
+			
+			for (int j = 0; j < size; j++) {
+				sum[j] += shape(octave[j]) * amplitude;
+			}
+			
+			octaveFrequency *= lacunarity;
+			amplitude *= gain;
+		}
+		
+		/*Divided once at the end like in "getValue"*/
+		if (doubles != null) {
+			for (int j = 0; j < size; j++) {
+				doubles[offset + j] = sum[j] / amplitudeSum;
+			}
+		} else {
+			for (int j = 0; j < size; j++) {
+				floats[offset + j] = (float)(sum[j] / amplitudeSum);
+			}
+		}
+	}
+	
+	@Override
+	public void fill(final double[] target, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		fill(target, null, offset, x, y, step, width, height);
+	}
+	
+	@Override
+	public void fill(final float[] target, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		fill(null, target, offset, x, y, step, width, height);
+	}
+	
+	/**
+	 * Sets the mode which decides how the octaves are shaped before they are added up.
+	 * @param mode The mode
+	 */
+	public void setMode(final Mode mode) {
+		this.mode = mode;
+	}
+	
+	/**
+	 * Sets the frequency of the first octave.
+	 * The default is 1.
+	 * @param frequency The frequency
+	 */
+	public void setFrequency(final double frequency) {
+		this.frequency = frequency;
+	}
+	
+	/**
+	 * Sets the factor by which the frequency grows from one octave to the next.
+	 * The default is 2.
+	 * @param lacunarity The lacunarity
+	 */
+	public void setLacunarity(final double lacunarity) {
+		this.lacunarity = lacunarity;
+	}
+	
+	/**
+	 * Sets the factor by which the amplitude shrinks from one octave to the next.
+	 * The default is 0.5.
+	 * @param gain The gain
+	 */
+	public void setGain(final double gain) {
+		this.gain = gain;
+	}
+	
+	/**
+	 * Sets the distance by which every octave is shifted against the previous one.
+	 * Should be zero for bounded sources like PerlinNoise.
+	 * @param octaveShift The shift
+	 */
+	public void setOctaveShift(final double octaveShift) {
+		this.octaveShift = octaveShift;
+	}
+	
+	/**
+	 * Sets the noise which displaces the coordinates before the octaves are sampled (domain warping).
+	 * @param warp The warp noise or null to disable warping
+	 * @param warpStrength The maximum displacement
+	 */
+	public void setWarp(final INoise2D warp, final double warpStrength) {
+		this.warp = warp;
+		this.warpStrength = warpStrength;
+	}
+	
+	/**
+	 * Returns the mode.
+	 * @return The mode
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+	
+	/**
+	 * Returns the amount of octaves.
+	 * @return The octave count
+	 */
+	public int getOctaveCount() {
+		return octaves.length;
+	}
+	
+	/*
+	 * The buffers only grow, so a thread filling regions of the same size allocates them once
+	 */
+	private static final class Scratch {
+		
+		private double[] first, second;
+		
+		public Scratch() {
+			first = new double[0];
+			second = new double[0];
+		}
+		
+		public Scratch ensureSize(final int size) {
+			if (first.length < size) {
+				first = new double[size];
+				second = new double[size];
+			}
+			
+			return this;
+		}
+		
+	}
+	
+	/**
+	 * Holds the ways the octaves can be shaped.
+	 * @author Sogomn
+	 *
+	 */
+	public enum Mode {
+		
+		/**
+		 * Fractional Brownian motion; the octaves are added up as they are.
+		 */
+		FBM,
+		
+		/**
+		 * Every octave is folded into sharp ridges where the source crosses zero. Good for mountain ranges.
+		 */
+		RIDGED,
+		
+		/**
+		 * Every octave is folded into round bumps. Good for clouds and hills.
+		 */
+		BILLOW;
+		
+	}
+	
+}
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.noise;
+
+import java.util.Random;
+
+/**
+ * Gradient noise without a stored grid. The gradient of every integer coordinate is chosen by hashing the coordinate with the seed,
+ * so the noise is defined everywhere (e.g. for infinite worlds) and the same seed always generates the same values.
+ * Objects of this class are immutable and can be used by several threads at once, e.g. to generate chunks in parallel.
+ * Generates values from 1 to -1.
+ * @author Sogomn
+ *
+ */
+public final strictfp class GradientNoise implements INoise2D {
+	
+	private final long seed, key;
+	
+	private static final int GRADIENT_COUNT = 16;
+	private static final int GRADIENT_BITS = 4;
+	private static final double[] GRADIENTS_X = new double[GRADIENT_COUNT];
+	private static final double[] GRADIENTS_Y = new double[GRADIENT_COUNT];
+	
+	/*
+	 * The largest possible value with unit gradients is sqrt(0.5)
+	 */
+	private static final double SCALE = Math.sqrt(2);
+	
+	private static final long SALT = 0x14057B7EF767814FL;
+	
+	/*
+	 * Batch size of the region fill; small enough for the lanes to stay in the L1 cache
+	 */
+	private static final int LANES = 64;
+	private static final int MIN_BATCH_WIDTH = 8;
+	
+	static {
+		for (int i = 0; i < GRADIENT_COUNT; i++) {
+			final double angle = 2 * Math.PI * i / GRADIENT_COUNT;
+			
+			GRADIENTS_X[i] = Math.cos(angle);
+			GRADIENTS_Y[i] = Math.sin(angle);
+		}
+	}
+	
+	/**
+	 * Constructs a new GradientNoise object with the given seed.
+	 * @param seed The seed
+	 */
+	public GradientNoise(final long seed) {
+		this.seed = seed;
+		
+		key = NoiseHash.key(seed, SALT);
+	}
+	
+	/**
+	 * Constructs a new GradientNoise object with a random seed.
+	 */
+	public GradientNoise() {
+		this(new Random().nextLong());
+	}
+	
+	private int gradient(final long x, final long y) {
+		final long hash = NoiseHash.hash(key, x, y);
+		
+		return (int)(hash >>> (Long.SIZE - GRADIENT_BITS));
+	}
+	
+	/*Quintic fade curve, which has a continuous second derivative*/
+	private static double fade(final double t) {
+		return t * t * t * (t * (t * 6 - 15) + 10);
+	}
+	
+	private static double dot(final int gradient, final double x, final double y) {
+		return GRADIENTS_X[gradient] * x + GRADIENTS_Y[gradient] * y;
+	}
+	
+	private double sample(final long x0, final double fractionX, final double fadeX, final long y0, final double fractionY, final double fadeY) {
+		final long x1 = x0 + 1;
+		final long y1 = y0 + 1;
+		
+		final double dot00 = dot(gradient(x0, y0), fractionX, fractionY);
+		final double dot10 = dot(gradient(x1, y0), fractionX - 1, fractionY);
+		final double dot01 = dot(gradient(x0, y1), fractionX, fractionY - 1);
+		final double dot11 = dot(gradient(x1, y1), fractionX - 1, fractionY - 1);
+		
+		final double top = dot00 + (dot10 - dot00) * fadeX;
+		final double bottom = dot01 + (dot11 - dot01) * fadeX;
+		final double value = (top + (bottom - top) * fadeY) * SCALE;
+		
+		return Math.max(Math.min(value, 1), -1);
+	}
+	
+	/**
+	 * Returns the noise value at the given point.
+	 * @return A value from 1 to -1 (inclusive)
+	 */
+	@Override
+	public double getValue(final double x, final double y) {
+		final double floorX = Math.floor(x);
+		final double floorY = Math.floor(y);
+		final double fractionX = x - floorX;
+		final double fractionY = y - floorY;
+		
+		return sample((long)floorX, fractionX, fade(fractionX), (long)floorY, fractionY, fade(fractionY));
+	}
+	
+	/*
+	 * Looks up the corner gradients of a batch of samples in one row.
+	 * Neighboring samples in the same or the next cell share their corners, so most hashes are reused.
+	 */
+	private void gather(final Lanes lanes, final long[] columns, final int start, final int count, final long y0) {
+		final long y1 = y0 + 1;
+		
+		long previous = 0;
+		int gradient00 = 0, gradient10 = 0, gradient01 = 0, gradient11 = 0;
+		
+		for (int lane = 0; lane < count; lane++) {
+			final long x0 = columns[start + lane];
+			
+			if (lane == 0 || (x0 != previous && x0 != previous + 1)) {
+				gradient00 = gradient(x0, y0);
+				gradient01 = gradient(x0, y1);
+				gradient10 = gradient(x0 + 1, y0);
+				gradient11 = gradient(x0 + 1, y1);
+			} else if (x0 == previous + 1) {
+				gradient00 = gradient10;
+				gradient01 = gradient11;
+				gradient10 = gradient(x0 + 1, y0);
+				gradient11 = gradient(x0 + 1, y1);
+			}
+			
+			lanes.x00[lane] = GRADIENTS_X[gradient00];
+			lanes.y00[lane] = GRADIENTS_Y[gradient00];
+			lanes.x10[lane] = GRADIENTS_X[gradient10];
+			lanes.y10[lane] = GRADIENTS_Y[gradient10];
+			lanes.x01[lane] = GRADIENTS_X[gradient01];
+			lanes.y01[lane] = GRADIENTS_Y[gradient01];
+			lanes.x11[lane] = GRADIENTS_X[gradient11];
+			lanes.y11[lane] = GRADIENTS_Y[gradient11];
+			
+			previous = x0;
+		}
+	}
+	
+	/*
+	 * Same arithmetic as "sample", but on whole lanes without branches or lookups so the JIT can vectorize the loop.
+	 * The operations are performed in the same order, so the results are identical.
+	 */
+	private static void evaluate(final Lanes lanes, final double[] fractionsX, final double[] fadesX, final int start, final int count, final double fractionY, final double fadeY) {
+		final double fractionY1 = fractionY - 1;
+		
+		for (int lane = 0; lane < count; lane++) {
+			final double fractionX = fractionsX[start + lane];
+			final double fractionX1 = fractionX - 1;
+			final double fadeX = fadesX[start + lane];
+			
+			final double dot00 = lanes.x00[lane] * fractionX + lanes.y00[lane] * fractionY;
+			final double dot10 = lanes.x10[lane] * fractionX1 + lanes.y10[lane] * fractionY;
+			final double dot01 = lanes.x01[lane] * fractionX + lanes.y01[lane] * fractionY1;
+			final double dot11 = lanes.x11[lane] * fractionX1 + lanes.y11[lane] * fractionY1;
+			
+			final double top = dot00 + (dot10 - dot00) * fadeX;
+			final double bottom = dot01 + (dot11 - dot01) * fadeX;
+			final double value = (top + (bottom - top) * fadeY) * SCALE;
+			
+			lanes.values[lane] = Math.max(Math.min(value, 1), -1);
+		}
+	}
+	
+	/*
+	 * Same computation as "getValue", but the column dependent parts are computed once per column instead of once per sample.
+	 * Wide regions are evaluated in batches of lanes; narrow ones sample by sample.
+	 */
+	private void fill(final double[] doubles, final float[] floats, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		final long[] columns = new long[width];
+		final double[] fractionsX = new double[width];
+		final double[] fadesX = new double[width];
+		final Lanes lanes = width >= MIN_BATCH_WIDTH ? new Lanes() : null;
+		
+		for (int column = 0; column < width; column++) {
+			final double sampleX = x + column * step;
+			final double floorX = Math.floor(sampleX);
+			
+			columns[column] = (long)floorX;
+			fractionsX[column] = sampleX - floorX;
+			fadesX[column] = fade(fractionsX[column]);
+		}
+		
+		for (int row = 0; row < height; row++) {
+			final double sampleY = y + row * step;
+			final double floorY = Math.floor(sampleY);
+			final long y0 = (long)floorY;
+			final double fractionY = sampleY - floorY;
+			final double fadeY = fade(fractionY);
+			final int rowOffset = offset + row * width;
+			
+			if (lanes == null) {
+				for (int column = 0; column < width; column++) {
+					final double value = sample(columns[column], fractionsX[column], fadesX[column], y0, fractionY, fadeY);
+					
+					if (doubles != null) {
+						doubles[rowOffset + column] = value;
+					} else {
+						floats[rowOffset + column] = (float)value;
+					}
+				}
+				
+				continue;
+			}
+			
+			for (int start = 0; start < width; start += LANES) {
+				final int count = Math.min(LANES, width - start);
+				
+				gather(lanes, columns, start, count, y0);
+				evaluate(lanes, fractionsX, fadesX, start, count, fractionY, fadeY);
+				
+				if (doubles != null) {
+					System.arraycopy(lanes.values, 0, doubles, rowOffset + start, count);
+				} else {
+					for (int lane = 0; lane < count; lane++) {
+						floats[rowOffset + start + lane] = (float)lanes.values[lane];
+					}
+				}
+			}
+		}
+	}
+	
+	@Override
+	public void fill(final double[] target, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		fill(target, null, offset, x, y, step, width, height);
+	}
+	
+	@Override
+	public void fill(final float[] target, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		fill(null, target, offset, x, y, step, width, height);
+	}
+	
+	/**
+	 * Returns the seed.
+	 * @return The seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	private static final class Lanes {
+		
+		private final double[] x00 = new double[LANES];
+		private final double[] y00 = new double[LANES];
+		private final double[] x10 = new double[LANES];
+		private final double[] y10 = new double[LANES];
+		private final double[] x01 = new double[LANES];
+		private final double[] y01 = new double[LANES];
+		private final double[] x11 = new double[LANES];
+		private final double[] y11 = new double[LANES];
+		private final double[] values = new double[LANES];
+		
+	}
+	
+}
@@ -18,6 +18,8 @@ package de.sogomn.engine.noise;
 
 /**
  * Defines an interface for 2D noise algorithms.
+ * The fill methods sample a whole region at once. The sample in column c and row r of a region is the value at
+ * (x + c * step, y + r * step) and is stored at index offset + r * width + c. Implementations can override them with tighter loops.
  * @author Sogomn
  *
  */
@@ -32,4 +34,102 @@ public interface INoise2D {
 	 */
 	double getValue(final double x, final double y);
 	
+	/**
+	 * Fills a region of the given array with noise values, row by row.
+	 * @param target The array
+	 * @param offset The index of the first sample
+	 * @param x The x coordinate of the first sample
+	 * @param y The y coordinate of the first sample
+	 * @param step The distance between two samples
+	 * @param width The amount of samples per row
+	 * @param height The amount of rows
+	 */
+	default void fill(final double[] target, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		for (int row = 0; row < height; row++) {
+			final double sampleY = y + row * step;
+			final int rowOffset = offset + row * width;
+			
+			for (int column = 0; column < width; column++) {
+				target[rowOffset + column] = getValue(x + column * step, sampleY);
+			}
+		}
+	}
+	
+	/**
+	 * Fills a region of the given array with noise values, row by row.
+	 * @param target The array
+	 * @param offset The index of the first sample
+	 * @param x The x coordinate of the first sample
+	 * @param y The y coordinate of the first sample
+	 * @param step The distance between two samples
+	 * @param width The amount of samples per row
+	 * @param height The amount of rows
+	 */
+	default void fill(final float[] target, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		for (int row = 0; row < height; row++) {
+			final double sampleY = y + row * step;
+			final int rowOffset = offset + row * width;
+			
+			for (int column = 0; column < width; column++) {
+				target[rowOffset + column] = (float)getValue(x + column * step, sampleY);
+			}
+		}
+	}
+	
+	/**
+	 * Fills the given array with noise values, starting at index zero.
+	 * @param target The array; at least width * height long
+	 * @param x The x coordinate of the first sample
+	 * @param y The y coordinate of the first sample
+	 * @param step The distance between two samples
+	 * @param width The amount of samples per row
+	 * @param height The amount of rows
+	 */
+	default void fill(final double[] target, final double x, final double y, final double step, final int width, final int height) {
+		fill(target, 0, x, y, step, width, height);
+	}
+	
+	/**
+	 * Fills the given array with noise values, starting at index zero.
+	 * @param target The array; at least width * height long
+	 * @param x The x coordinate of the first sample
+	 * @param y The y coordinate of the first sample
+	 * @param step The distance between two samples
+	 * @param width The amount of samples per row
+	 * @param height The amount of rows
+	 */
+	default void fill(final float[] target, final double x, final double y, final double step, final int width, final int height) {
+		fill(target, 0, x, y, step, width, height);
+	}
+	
+	/**
+	 * Fills the given array with noise values like "fill", but splits the rows into bands which are filled in parallel.
+	 * The bands run in the ForkJoinPool of the calling thread or in the common pool.
+	 * The implementation must be safe to use from several threads. Since every band is filled with its own origin,
+	 * the coordinates (and therefore the values) may differ from the sequential fill in the last bits.
+	 * @param target The array; at least width * height long
+	 * @param x The x coordinate of the first sample
+	 * @param y The y coordinate of the first sample
+	 * @param step The distance between two samples
+	 * @param width The amount of samples per row
+	 * @param height The amount of rows
+	 */
+	default void fillParallel(final double[] target, final double x, final double y, final double step, final int width, final int height) {
+		new NoiseFillTask(this, target, null, x, y, step, width, 0, height).invoke();
+	}
+	
+	/**
+	 * Fills the given array with noise values like "fill", but splits the rows into bands which are filled in parallel.
+	 * See the double version for details.
+	 * @param target The array; at least width * height long
+	 * @param x The x coordinate of the first sample
+	 * @param y The y coordinate of the first sample
+	 * @param step The distance between two samples
+	 * @param width The amount of samples per row
+	 * @param height The amount of rows
+	 */
+	default void fillParallel(final float[] target, final double x, final double y, final double step, final int width, final int height) {
+		new NoiseFillTask(this, null, target, x, y, step, width, 0, height).invoke();
+	}
+	
 }
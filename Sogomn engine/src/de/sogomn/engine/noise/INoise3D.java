@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.noise;
+
+/**
+ * Defines an interface for 3D noise algorithms.
+ * The third coordinate can be used for volumes or as time to animate 2D noise smoothly.
+ * @author Sogomn
+ *
+ */
+@FunctionalInterface
+public interface INoise3D {
+	
+	/**
+	 * Returns a noise value relative to the given x, y and z coordinates.
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @param z The z coordinate
+	 * @return The noise value
+	 */
+	double getValue(final double x, final double y, final double z);
+	
+	/**
+	 * Returns a 2D view of the plane at the given z coordinate.
+	 * The view can be used with everything that takes 2D noise, e.g. to fill a region with one frame of animated noise.
+	 * @param z The z coordinate
+	 * @return The slice
+	 */
+	default INoise2D slice(final double z) {
+		return (x, y) -> getValue(x, y, z);
+	}
+	
+}
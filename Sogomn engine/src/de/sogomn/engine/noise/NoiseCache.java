@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.noise;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Caches square chunks of samples of another noise so regions which are sampled again (e.g. when the camera moves back and forth) are not generated twice.
+ * The sample with the indices (i, j) is the value at (i * step, j * step). A chunk holds chunkSize * chunkSize samples as floats.
+ * When the cached chunks exceed the memory budget, the least recently used ones are evicted.
+ * Chunks which are about to come into view can be generated ahead of time by background threads with "prefetch".
+ * At most as many chunks as fit into the memory budget are generated at once, so prefetched chunks are not evicted right away.
+ * The source noise must therefore be safe to use from several threads. This class is thread-safe.
+ * @author Sogomn
+ *
+ */
+public final class NoiseCache {
+	
+	private final INoise2D noise;
+	private final int chunkSize;
+	private final double step;
+	private final int maxChunks;
+	
+	private final TileMap chunks;
+	private final ExecutorService executor;
+	
+	private long hits, misses;
+	private int pending;
+	private boolean open;
+	
+	private static final int DEFAULT_THREADS = 1;
+	
+	/**
+	 * Constructs a new NoiseCache object.
+	 * @param noise The noise to sample
+	 * @param chunkSize The amount of samples per row and column of a chunk
+	 * @param step The distance between two samples
+	 * @param memoryBudget The maximum amount of bytes the cached samples may take up. At least one chunk is always kept
+	 * @param threads The amount of threads generating prefetched chunks
+	 */
+	public NoiseCache(final INoise2D noise, final int chunkSize, final double step, final long memoryBudget, final int threads) {
+		this.noise = noise;
+		this.chunkSize = chunkSize;
+		this.step = step;
+		
+		final long chunkBytes = (long)chunkSize * chunkSize * Float.BYTES;
+		
+		maxChunks = (int)Math.max(Math.min(memoryBudget / chunkBytes, Integer.MAX_VALUE), 1);
+		chunks = new TileMap();
+		executor = Executors.newFixedThreadPool(threads, runnable -> {
+			final Thread thread = new Thread(runnable, "NoiseCache prefetch");
+			
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		open = true;
+	}
+	
+	/**
+	 * Constructs a new NoiseCache object with one prefetch thread.
+	 * @param noise The noise to sample
+	 * @param chunkSize The amount of samples per row and column of a chunk
+	 * @param step The distance between two samples
+	 * @param memoryBudget The maximum amount of bytes the cached samples may take up
+	 */
+	public NoiseCache(final INoise2D noise, final int chunkSize, final double step, final long memoryBudget) {
+		this(noise, chunkSize, step, memoryBudget, DEFAULT_THREADS);
+	}
+	
+	/**
+	 * Packs the given chunk coordinates into one key.
+	 * @param chunkX The chunk x coordinate
+	 * @param chunkY The chunk y coordinate
+	 * @return The key
+	 */
+	public static long pack(final int chunkX, final int chunkY) {
+		return ((long)chunkX << Integer.SIZE) | (chunkY & 0xFFFFFFFFL);
+	}
+	
+	private float[] generate(final int chunkX, final int chunkY) {
+		final float[] tile = new float[chunkSize * chunkSize];
+		final double x = (double)chunkX * chunkSize * step;
+		final double y = (double)chunkY * chunkSize * step;
+		
+		noise.fill(tile, x, y, step, chunkSize, chunkSize);
+		
+		return tile;
+	}
+	
+	private void evict() {
+		while (chunks.size() > maxChunks) {
+			final TileMap.Entry eldest = chunks.eldest();
+			
+			if (eldest == null) {
+				return;
+			}
+			
+			chunks.remove(eldest);
+		}
+	}
+	
+	/*
+	 * Every placeholder is stored exactly once, either with its tile or with null if it has not been generated
+	 */
+	private synchronized void store(final TileMap.Entry entry, final float[] tile) {
+		entry.tile = tile;
+		pending--;
+		
+		if (tile == null) {
+			chunks.remove(entry);
+		} else if (chunks.get(entry.key) == entry) {
+			evict();
+		}
+		
+		notifyAll();
+	}
+	
+	private void generate(final TileMap.Entry entry, final int chunkX, final int chunkY) {
+		float[] tile = null;
+		
+		try {
+			tile = generate(chunkX, chunkY);
+		} finally {
+			store(entry, tile);
+		}
+	}
+	
+	/**
+	 * Returns the chunk with the given coordinates. If it is not cached, it gets generated by the calling thread.
+	 * If it is currently being prefetched, the calling thread waits for it.
+	 * The returned array must not be modified.
+	 * @param chunkX The chunk x coordinate
+	 * @param chunkY The chunk y coordinate
+	 * @return The samples of the chunk, row by row
+	 */
+	public float[] getChunk(final int chunkX, final int chunkY) {
+		final long key = pack(chunkX, chunkY);
+		final TileMap.Entry entry;
+		
+		synchronized (this) {
+			TileMap.Entry cached = chunks.get(key);
+			
+			while (cached != null && cached.tile == null) {
+				try {
+					wait();
+				} catch (final InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					
+					break;
+				}
+				
+				cached = chunks.get(key);
+			}
+			
+			if (cached != null && cached.tile != null) {
+				hits++;
+				chunks.touch(cached);
+				
+				return cached.tile;
+			}
+			
+			misses++;
+			
+			/*Interrupted while the chunk is being generated by another thread*/
+			if (cached != null) {
+				return generate(chunkX, chunkY);
+			}
+			
+			pending++;
+			entry = chunks.put(key, null);
+		}
+		
+		generate(entry, chunkX, chunkY);
+		
+		return entry.tile;
+	}
+	
+	/**
+	 * Returns the sample with the given indices.
+	 * @param sampleX The sample index on the x axis
+	 * @param sampleY The sample index on the y axis
+	 * @return The sample
+	 */
+	public float getSample(final int sampleX, final int sampleY) {
+		final int chunkX = Math.floorDiv(sampleX, chunkSize);
+		final int chunkY = Math.floorDiv(sampleY, chunkSize);
+		final float[] tile = getChunk(chunkX, chunkY);
+		
+		return tile[Math.floorMod(sampleY, chunkSize) * chunkSize + Math.floorMod(sampleX, chunkSize)];
+	}
+	
+	/**
+	 * Generates the chunk with the given coordinates in the background unless it is already cached or being generated.
+	 * Nothing is prefetched while as many chunks as fit into the memory budget are being generated.
+	 * @param chunkX The chunk x coordinate
+	 * @param chunkY The chunk y coordinate
+	 */
+	public void prefetch(final int chunkX, final int chunkY) {
+		final long key = pack(chunkX, chunkY);
+		final TileMap.Entry entry;
+		
+		synchronized (this) {
+			if (!open || pending >= maxChunks || chunks.get(key) != null) {
+				return;
+			}
+			
+			pending++;
+			entry = chunks.put(key, null);
+		}
+		
+		try {
+			executor.execute(new PrefetchTask(entry, chunkX, chunkY));
+		} catch (final RejectedExecutionException ex) {
+			store(entry, null);
+		}
+	}
+	
+	/**
+	 * Prefetches all chunks in the given range (inclusive), e.g. the chunks around the visible area.
+	 * @param minChunkX The smallest chunk x coordinate
+	 * @param minChunkY The smallest chunk y coordinate
+	 * @param maxChunkX The largest chunk x coordinate
+	 * @param maxChunkY The largest chunk y coordinate
+	 */
+	public void prefetch(final int minChunkX, final int minChunkY, final int maxChunkX, final int maxChunkY) {
+		for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+			for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+				prefetch(chunkX, chunkY);
+			}
+		}
+	}
+	
+	/**
+	 * Prefetches all chunks which contain samples of the given area in noise coordinates.
+	 * @param x The x coordinate of the area
+	 * @param y The y coordinate of the area
+	 * @param width The width of the area
+	 * @param height The height of the area
+	 */
+	public void prefetchArea(final double x, final double y, final double width, final double height) {
+		final double chunkLength = chunkSize * step;
+		final int minChunkX = (int)Math.floor(x / chunkLength);
+		final int minChunkY = (int)Math.floor(y / chunkLength);
+		final int maxChunkX = (int)Math.floor((x + width) / chunkLength);
+		final int maxChunkY = (int)Math.floor((y + height) / chunkLength);
+		
+		prefetch(minChunkX, minChunkY, maxChunkX, maxChunkY);
+	}
+	
+	/**
+	 * Removes all cached chunks. Chunks which are currently being generated are not cached when they are finished.
+	 */
+	public synchronized void clear() {
+		chunks.clear();
+		notifyAll();
+	}
+	
+	/**
+	 * Stops the prefetch threads. Chunks can still be read afterwards but are not prefetched anymore.
+	 * Chunks whose prefetch has not started yet are removed, so reading them generates them on the calling thread.
+	 */
+	public void close() {
+		synchronized (this) {
+			open = false;
+		}
+		
+		for (final Runnable task : executor.shutdownNow()) {
+			store(((PrefetchTask)task).entry, null);
+		}
+	}
+	
+	/**
+	 * Returns the amount of cached chunks, including the ones currently being generated.
+	 * @return The chunk count
+	 */
+	public synchronized int getChunkCount() {
+		return chunks.size();
+	}
+	
+	/**
+	 * Returns the maximum amount of chunks that fit into the memory budget.
+	 * @return The maximum chunk count
+	 */
+	public int getMaxChunks() {
+		return maxChunks;
+	}
+	
+	/**
+	 * Returns the amount of "getChunk" calls which were answered from the cache.
+	 * @return The hit count
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Returns the amount of "getChunk" calls which had to generate the chunk.
+	 * @return The miss count
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Returns the amount of samples per row and column of a chunk.
+	 * @return The chunk size
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+	
+	/**
+	 * Returns the distance between two samples.
+	 * @return The step
+	 */
+	public double getStep() {
+		return step;
+	}
+	
+	private final class PrefetchTask implements Runnable {
+		
+		private final TileMap.Entry entry;
+		private final int chunkX, chunkY;
+		
+		public PrefetchTask(final TileMap.Entry entry, final int chunkX, final int chunkY) {
+			this.entry = entry;
+			this.chunkX = chunkX;
+			this.chunkY = chunkY;
+		}
+		
+		@Override
+		public void run() {
+			generate(entry, chunkX, chunkY);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.noise;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fills a band of rows of a noise region. Splits itself in halves until the bands are small enough.
+ * Exactly one of the target arrays is used.
+ * @author Sogomn
+ *
+ */
+final class NoiseFillTask extends RecursiveAction {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final INoise2D noise;
+	private final double[] doubles;
+	private final float[] floats;
+	private final double x, y, step;
+	private final int width, startRow, endRow;
+	
+	private static final int ROWS_PER_TASK = 8;
+	
+	public NoiseFillTask(final INoise2D noise, final double[] doubles, final float[] floats, final double x, final double y, final double step, final int width, final int startRow, final int endRow) {
+		this.noise = noise;
+		this.doubles = doubles;
+		this.floats = floats;
+		this.x = x;
+		this.y = y;
+		this.step = step;
+		this.width = width;
+		this.startRow = startRow;
+		this.endRow = endRow;
+	}
+	
+	@Override
+	protected void compute() {
+		final int rows = endRow - startRow;
+		
+		if (rows <= ROWS_PER_TASK) {
+			final int offset = startRow * width;
+			final double bandY = y + startRow * step;
+			
+			if (doubles != null) {
+				noise.fill(doubles, offset, x, bandY, step, width, rows);
+			} else {
+				noise.fill(floats, offset, x, bandY, step, width, rows);
+			}
+			
+			return;
+		}
+		
+		final int middle = startRow + rows / 2;
+		
+		invokeAll(new NoiseFillTask(noise, doubles, floats, x, y, step, width, startRow, middle), new NoiseFillTask(noise, doubles, floats, x, y, step, width, middle, endRow));
+	}
+	
+}
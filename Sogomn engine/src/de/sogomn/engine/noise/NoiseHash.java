@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.noise;
+
+/**
+ * Hashes lattice coordinates for the noise classes which choose a value or a gradient per lattice point.
+ * Every noise type salts its seed with its own constant, so noises of different types created with the same seed
+ * do not hash the same keys and are not correlated.
+ * @author Sogomn
+ *
+ */
+final class NoiseHash {
+	
+	private static final long PRIME_X = 0x9E3779B97F4A7C15L;
+	private static final long PRIME_Y = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME_Z = 0x165667B19E3779F9L;
+	
+	private NoiseHash() {
+		//...
+	}
+	
+	/*Hash finalizer of SplitMix64*/
+	private static long mix(long hash) {
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		
+		return hash ^ (hash >>> 31);
+	}
+	
+	/**
+	 * Combines the seed with the salt of a noise type into the key passed to the hash methods.
+	 */
+	static long key(final long seed, final long salt) {
+		return mix(seed + salt);
+	}
+	
+	static long hash(final long key, final long x, final long y) {
+		return mix(key ^ (x * PRIME_X) ^ (y * PRIME_Y));
+	}
+	
+	static long hash(final long key, final long x, final long y, final long z) {
+		return mix(key ^ (x * PRIME_X) ^ (y * PRIME_Y) ^ (z * PRIME_Z));
+	}
+	
+}
@@ -18,19 +18,18 @@ package de.sogomn.engine.noise;
 
 import java.util.Random;
 
-import de.sogomn.engine.util.Vector2D;
-
 /**
  * This class has a grid of 2D vectors of the length 1 which are rotated randomly.
  * The noise values of a point in the 2D space can then be calculated.
  * Generates values from 1 to -1.
+ * The vectors are stored in two flat arrays (column by column), so sampling does not allocate any objects.
  * @author Sogomn
  *
  */
-public final class PerlinNoise implements INoise2D {
+public final strictfp class PerlinNoise implements INoise2D {
 	
 	private int gridWidth, gridHeight;
-	private Vector2D[][] grid;
+	private double[] gridX, gridY;
 	
 	private double contrast;
 	
@@ -39,37 +38,44 @@ public final class PerlinNoise implements INoise2D {
 	private static final double VECTOR_LENGTH = 1.0;
 	private static final double DEFAULT_CONTRAST = 1.0;
 	
-	/**
-	 * Constructs a new PerlinNoise object with the given grid width and height.
-	 * @param gridWidth The grid width
-	 * @param gridHeight The grid height
-	 */
-	public PerlinNoise(final int gridWidth, final int gridHeight) {
+	private PerlinNoise(final int gridWidth, final int gridHeight, final Random ran) {
 		this.gridWidth = gridWidth;
 		this.gridHeight = gridHeight;
+		this.ran = ran;
 		
-		grid = new Vector2D[gridWidth][gridHeight];
+		gridX = new double[gridWidth * gridHeight];
+		gridY = new double[gridWidth * gridHeight];
 		contrast = DEFAULT_CONTRAST;
-		ran = new Random();
 		
 		randomizeGrid();
 	}
 	
+	/**
+	 * Constructs a new PerlinNoise object with the given grid width and height.
+	 * @param gridWidth The grid width
+	 * @param gridHeight The grid height
+	 */
+	public PerlinNoise(final int gridWidth, final int gridHeight) {
+		this(gridWidth, gridHeight, new Random());
+	}
+	
 	/**
 	 * Constructs a new PerlinNoise object with the given grid width and height and a given seed.
+	 * The same seed always results in the same grid.
 	 * @param gridWidth The grid width
 	 * @param gridHeight The grid height
 	 * @param seed The seed
 	 */
 	public PerlinNoise(final int gridWidth, final int gridHeight, final long seed) {
-		this(gridWidth, gridHeight);
-		
-		ran.setSeed(seed);
+		this(gridWidth, gridHeight, new Random(seed));
 	}
 	
 	/*Interpolation function ripped from here: http://freespace.virgin.net/hugo.elias/models/m_perlin.htm*/
-	private double interpolate(final double one, final double two, final double weight) {
-		final double advancedWeight = (1 - Math.cos(weight * Math.PI)) / 2;
+	private static double advanceWeight(final double weight) {
+		return (1 - Math.cos(weight * Math.PI)) / 2;
+	}
+	
+	private static double interpolate(final double one, final double two, final double advancedWeight) {
 		final double value = one * (1 - advancedWeight) + two * advancedWeight;
 		
 		return value;
@@ -92,35 +98,27 @@ public final class PerlinNoise implements INoise2D {
 			return 0;
 		}
 		
-		/*Points*/
-		final Vector2D point = new Vector2D(x, y);
-		
-		final Vector2D gridPoint00 = new Vector2D(x0, y0);
-		final Vector2D gridPoint10 = new Vector2D(x1, y0);
-		final Vector2D gridPoint01 = new Vector2D(x0, y1);
-		final Vector2D gridPoint11 = new Vector2D(x1, y1);
-		
 		/*Distances from point to grid point*/
-		final Vector2D distance00 = point.distance(gridPoint00);
-		final Vector2D distance10 = point.distance(gridPoint10);
-		final Vector2D distance01 = point.distance(gridPoint01);
-		final Vector2D distance11 = point.distance(gridPoint11);
+		final double distanceX0 = x0 - x;
+		final double distanceY0 = y0 - y;
+		final double distanceX1 = x1 - x;
+		final double distanceY1 = y1 - y;
 		
-		/*Grid vectors*/
-		final Vector2D grid00 = grid[x0][y0];
-		final Vector2D grid10 = grid[x1][y0];
-		final Vector2D grid01 = grid[x0][y1];
-		final Vector2D grid11 = grid[x1][y1];
+		/*Grid vector indices*/
+		final int index00 = x0 * gridHeight + y0;
+		final int index10 = x1 * gridHeight + y0;
+		final int index01 = index00 + 1;
+		final int index11 = index10 + 1;
 		
 		/*Direction relations of distances and grid vectors*/
-		final double dot00 = distance00.dot(grid00);
-		final double dot10 = distance10.dot(grid10);
-		final double dot01 = distance01.dot(grid01);
-		final double dot11 = distance11.dot(grid11);
+		final double dot00 = distanceX0 * gridX[index00] + distanceY0 * gridY[index00];
+		final double dot10 = distanceX1 * gridX[index10] + distanceY0 * gridY[index10];
+		final double dot01 = distanceX0 * gridX[index01] + distanceY1 * gridY[index01];
+		final double dot11 = distanceX1 * gridX[index11] + distanceY1 * gridY[index11];
 		
 		/*Interpolation weights*/
-		final double weightX = x - x0;
-		final double weightY = y - y0;
+		final double weightX = advanceWeight(x - x0);
+		final double weightY = advanceWeight(y - y0);
 		
 		/*Interpolation of the relations*/
 		final double top = interpolate(dot00, dot10, weightX);
@@ -132,17 +130,89 @@ public final class PerlinNoise implements INoise2D {
 		return value;
 	}
 	
+	/*Same computation as "getValue", but the column dependent parts are computed once per column instead of once per sample*/
+	private void fill(final double[] doubles, final float[] floats, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		final int[] columns = new int[width];
+		final double[] distancesX0 = new double[width];
+		final double[] distancesX1 = new double[width];
+		final double[] weightsX = new double[width];
+		
+		for (int column = 0; column < width; column++) {
+			final double sampleX = x + column * step;
+			final int x0 = (int)sampleX;
+			final int x1 = x0 + 1;
+			
+			columns[column] = (x0 < 0 || x1 > gridWidth - 1) ? -1 : x0;
+			distancesX0[column] = x0 - sampleX;
+			distancesX1[column] = x1 - sampleX;
+			weightsX[column] = advanceWeight(sampleX - x0);
+		}
+		
+		for (int row = 0; row < height; row++) {
+			final double sampleY = y + row * step;
+			final int y0 = (int)sampleY;
+			final int y1 = y0 + 1;
+			final boolean outside = y0 < 0 || y1 > gridHeight - 1;
+			final double distanceY0 = y0 - sampleY;
+			final double distanceY1 = y1 - sampleY;
+			final double weightY = advanceWeight(sampleY - y0);
+			final int rowOffset = offset + row * width;
+			
+			for (int column = 0; column < width; column++) {
+				final int x0 = columns[column];
+				
+				double value = 0;
+				
+				if (!outside && x0 >= 0) {
+					final double distanceX0 = distancesX0[column];
+					final double distanceX1 = distancesX1[column];
+					final int index00 = x0 * gridHeight + y0;
+					final int index10 = index00 + gridHeight;
+					final int index01 = index00 + 1;
+					final int index11 = index10 + 1;
+					
+					final double dot00 = distanceX0 * gridX[index00] + distanceY0 * gridY[index00];
+					final double dot10 = distanceX1 * gridX[index10] + distanceY0 * gridY[index10];
+					final double dot01 = distanceX0 * gridX[index01] + distanceY1 * gridY[index01];
+					final double dot11 = distanceX1 * gridX[index11] + distanceY1 * gridY[index11];
+					
+					final double weightX = weightsX[column];
+					final double top = interpolate(dot00, dot10, weightX);
+					final double bottom = interpolate(dot01, dot11, weightX);
+					
+					value = interpolate(top, bottom, weightY) * contrast;
+					value = Math.max(Math.min(value, 1), -1);
+				}
+				
+				if (doubles != null) {
+					doubles[rowOffset + column] = value;
+				} else {
+					floats[rowOffset + column] = (float)value;
+				}
+			}
+		}
+	}
+	
+	@Override
+	public void fill(final double[] target, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		fill(target, null, offset, x, y, step, width, height);
+	}
+	
+	@Override
+	public void fill(final float[] target, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		fill(null, target, offset, x, y, step, width, height);
+	}
+	
 	/**
 	 * Randomizes the vector grid. The noise values will be completely different after that.
 	 */
 	public void randomizeGrid() {
-		for (int x = 0; x < gridWidth; x++) {
-			for (int y = 0; y < gridHeight; y++) {
-				final double rotation = ran.nextDouble() * 360; //360 degrees
-				final Vector2D vector = new Vector2D(VECTOR_LENGTH, 0).rotate(rotation);
-				
-				grid[x][y] = vector;
-			}
+		for (int i = 0; i < gridX.length; i++) {
+			final double rotation = ran.nextDouble() * 360; //360 degrees
+			final double radians = Math.toRadians(rotation);
+			
+			gridX[i] = VECTOR_LENGTH * Math.cos(radians);
+			gridY[i] = VECTOR_LENGTH * Math.sin(radians);
 		}
 	}
 	
@@ -152,12 +222,16 @@ public final class PerlinNoise implements INoise2D {
 	 * @param degrees The rotation angle in degrees
 	 */
 	public void rotateGrid(final double degrees) {
-		for (int x = 0; x < gridWidth; x++) {
-			for (int y = 0; y < gridHeight; y++) {
-				final Vector2D vector = grid[x][y].rotate(degrees);
-				
-				grid[x][y] = vector;
-			}
+		final double radians = Math.toRadians(degrees);
+		final double cos = Math.cos(radians);
+		final double sin = Math.sin(radians);
+		
+		for (int i = 0; i < gridX.length; i++) {
+			final double x = gridX[i];
+			final double y = gridY[i];
+			
+			gridX[i] = x * cos - y * sin;
+			gridY[i] = y * cos + x * sin;
 		}
 	}
 	
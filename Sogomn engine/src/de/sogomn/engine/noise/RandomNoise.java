@@ -19,19 +19,27 @@ package de.sogomn.engine.noise;
 import java.util.Random;
 
 /**
- * This class generates random values which are independent of the input.
+ * This class generates white noise. Every cell with integer coordinates gets its own random value, which is
+ * computed by hashing the seed and the coordinates of the cell. The value of a cell is therefore the same
+ * no matter in which order or by which thread the cells are sampled.
+ * There is no shared mutable state besides the seed, so the noise can be sampled by several threads without locking.
+ * The seed and the hash key derived from it are replaced together, so a sample never mixes an old key with a new seed.
  * @author Sogomn
  *
  */
 public final class RandomNoise implements INoise2D {
 	
-	private Random random;
+	private volatile Seed seed;
+	
+	private static final long SALT = 0x5851F42D4C957F2DL;
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+	private static final int DOUBLE_SHIFT = Long.SIZE - 53;
 	
 	/**
 	 * Constructs a new RandomNoise object with a random seed.
 	 */
 	public RandomNoise() {
-		random = new Random();
+		this(new Random().nextLong());
 	}
 	
 	/**
@@ -39,20 +47,57 @@ public final class RandomNoise implements INoise2D {
 	 * @param seed The seed
 	 */
 	public RandomNoise(final long seed) {
-		this();
+		setSeed(seed);
+	}
+	
+	/*Uses the upper 53 bits like Random.nextDouble does*/
+	private static double value(final long key, final long x, final long y) {
+		final long hash = NoiseHash.hash(key, x, y);
 		
-		random.setSeed(seed);
+		return (hash >>> DOUBLE_SHIFT) * DOUBLE_UNIT;
 	}
 	
 	/**
-	 * Generates a completely random value.
+	 * Returns the random value of the cell which contains the given point.
 	 * @return A random value from 0 (inclusive) to 1 (exclusive)
 	 */
 	@Override
 	public double getValue(final double x, final double y) {
-		final double value = random.nextDouble();
+		return value(seed.key, (long)Math.floor(x), (long)Math.floor(y));
+	}
+	
+	private void fill(final double[] doubles, final float[] floats, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		final long key = seed.key;
+		final long[] columns = new long[width];
+		
+		for (int column = 0; column < width; column++) {
+			columns[column] = (long)Math.floor(x + column * step);
+		}
 		
-		return value;
+		for (int row = 0; row < height; row++) {
+			final long cellY = (long)Math.floor(y + row * step);
+			final int rowOffset = offset + row * width;
+			
+			for (int column = 0; column < width; column++) {
+				final double value = value(key, columns[column], cellY);
+				
+				if (doubles != null) {
+					doubles[rowOffset + column] = value;
+				} else {
+					floats[rowOffset + column] = (float)value;
+				}
+			}
+		}
+	}
+	
+	@Override
+	public void fill(final double[] target, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		fill(target, null, offset, x, y, step, width, height);
+	}
+	
+	@Override
+	public void fill(final float[] target, final int offset, final double x, final double y, final double step, final int width, final int height) {
+		fill(null, target, offset, x, y, step, width, height);
 	}
 	
 	/**
@@ -60,7 +105,27 @@ public final class RandomNoise implements INoise2D {
 	 * @param seed The new seed
 	 */
 	public void setSeed(final long seed) {
-		random.setSeed(seed);
+		this.seed = new Seed(seed);
+	}
+	
+	/**
+	 * Returns the seed.
+	 * @return The seed
+	 */
+	public long getSeed() {
+		return seed.seed;
+	}
+	
+	private static final class Seed {
+		
+		private final long seed, key;
+		
+		public Seed(final long seed) {
+			this.seed = seed;
+			
+			key = NoiseHash.key(seed, SALT);
+		}
+		
 	}
 	
 }
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.noise;
+
+import java.util.Random;
+
+/**
+ * Simplex noise in two and three dimensions.
+ * Instead of the corners of a square or a cube only the corners of a triangle or a tetrahedron are evaluated,
+ * which means 3 instead of 4 gradients in 2D and 4 instead of 8 gradients in 3D. The result shows fewer axis-aligned artifacts than PerlinNoise.
+ * Like in the GradientNoise class the gradients are chosen by hashing the coordinates with the seed, so there is no stored grid and no period.
+ * Objects of this class are immutable and can be used by several threads at once.
+ * Generates values from 1 to -1.
+ * @author Sogomn
+ *
+ */
+public final strictfp class SimplexNoise implements INoise2D, INoise3D {
+	
+	private final long seed, key;
+	
+	private static final int GRADIENT_COUNT_2D = 16;
+	private static final int GRADIENT_BITS_2D = 4;
+	private static final double[] GRADIENTS_X = new double[GRADIENT_COUNT_2D];
+	private static final double[] GRADIENTS_Y = new double[GRADIENT_COUNT_2D];
+	
+	/*
+	 * The twelve edge midpoints of a cube
+	 */
+	private static final int GRADIENT_COUNT_3D = 12;
+	private static final double[] GRADIENTS_3D = {
+		1, 1, 0,	-1, 1, 0,	1, -1, 0,	-1, -1, 0,
+		1, 0, 1,	-1, 0, 1,	1, 0, -1,	-1, 0, -1,
+		0, 1, 1,	0, -1, 1,	0, 1, -1,	0, -1, -1
+	};
+	
+	private static final double SKEW_2D = (Math.sqrt(3) - 1) / 2;
+	private static final double UNSKEW_2D = (3 - Math.sqrt(3)) / 6;
+	private static final double SKEW_3D = 1.0 / 3;
+	private static final double UNSKEW_3D = 1.0 / 6;
+	
+	/*
+	 * Squared radius of the contribution of one corner
+	 */
+	private static final double RADIUS_2D = 0.5;
+	private static final double RADIUS_3D = 0.6;
+	
+	/*
+	 * Scale the sums to roughly fill the range from -1 to 1
+	 */
+	private static final double SCALE_2D = 99.2;
+	private static final double SCALE_3D = 32;
+	
+	private static final long SALT = 0x2545F4914F6CDD1DL;
+	
+	static {
+		for (int i = 0; i < GRADIENT_COUNT_2D; i++) {
+			final double angle = 2 * Math.PI * (i + 0.5) / GRADIENT_COUNT_2D;
+			
+			GRADIENTS_X[i] = Math.cos(angle);
+			GRADIENTS_Y[i] = Math.sin(angle);
+		}
+	}
+	
+	/**
+	 * Constructs a new SimplexNoise object with the given seed.
+	 * @param seed The seed
+	 */
+	public SimplexNoise(final long seed) {
+		this.seed = seed;
+		
+		key = NoiseHash.key(seed, SALT);
+	}
+	
+	/**
+	 * Constructs a new SimplexNoise object with a random seed.
+	 */
+	public SimplexNoise() {
+		this(new Random().nextLong());
+	}
+	
+	private double corner(final long x, final long y, final double offsetX, final double offsetY) {
+		final double falloff = RADIUS_2D - offsetX * offsetX - offsetY * offsetY;
+		
+		if (falloff <= 0) {
+			return 0;
+		}
+		
+		final long hash = NoiseHash.hash(key, x, y);
+		final int gradient = (int)(hash >>> (Long.SIZE - GRADIENT_BITS_2D));
+		final double falloffSquared = falloff * falloff;
+		
+		return falloffSquared * falloffSquared * (GRADIENTS_X[gradient] * offsetX + GRADIENTS_Y[gradient] * offsetY);
+	}
+	
+	private double corner(final long x, final long y, final long z, final double offsetX, final double offsetY, final double offsetZ) {
+		final double falloff = RADIUS_3D - offsetX * offsetX - offsetY * offsetY - offsetZ * offsetZ;
+		
+		if (falloff <= 0) {
+			return 0;
+		}
+		
+		final long hash = NoiseHash.hash(key, x, y, z);
+		final int index = (int)(((hash >>> Integer.SIZE) * GRADIENT_COUNT_3D) >>> Integer.SIZE) * 3;
+		final double falloffSquared = falloff * falloff;
+		final double dot = GRADIENTS_3D[index] * offsetX + GRADIENTS_3D[index + 1] * offsetY + GRADIENTS_3D[index + 2] * offsetZ;
+		
+		return falloffSquared * falloffSquared * dot;
+	}
+	
+	private static double clamp(final double value) {
+		return Math.max(Math.min(value, 1), -1);
+	}
+	
+	/**
+	 * Returns the 2D noise value at the given point.
+	 * @return A value from 1 to -1 (inclusive)
+	 */
+	@Override
+	public double getValue(final double x, final double y) {
+		final double skew = (x + y) * SKEW_2D;
+		final double cellX = Math.floor(x + skew);
+		final double cellY = Math.floor(y + skew);
+		final double unskew = (cellX + cellY) * UNSKEW_2D;
+		final double x0 = x - cellX + unskew;
+		final double y0 = y - cellY + unskew;
+		final long i = (long)cellX;
+		final long j = (long)cellY;
+		
+		/*Upper or lower triangle of the skewed cell*/
+		final int stepX = x0 > y0 ? 1 : 0;
+		final int stepY = 1 - stepX;
+		
+		final double x1 = x0 - stepX + UNSKEW_2D;
+		final double y1 = y0 - stepY + UNSKEW_2D;
+		final double x2 = x0 - 1 + 2 * UNSKEW_2D;
+		final double y2 = y0 - 1 + 2 * UNSKEW_2D;
+		
+		final double sum = corner(i, j, x0, y0) + corner(i + stepX, j + stepY, x1, y1) + corner(i + 1, j + 1, x2, y2);
+		
+		return clamp(sum * SCALE_2D);
+	}
+	
+	/**
+	 * Returns the 3D noise value at the given point.
+	 * @return A value from 1 to -1 (inclusive)
+	 */
+	@Override
+	public double getValue(final double x, final double y, final double z) {
+		final double skew = (x + y + z) * SKEW_3D;
+		final double cellX = Math.floor(x + skew);
+		final double cellY = Math.floor(y + skew);
+		final double cellZ = Math.floor(z + skew);
+		final double unskew = (cellX + cellY + cellZ) * UNSKEW_3D;
+		final double x0 = x - cellX + unskew;
+		final double y0 = y - cellY + unskew;
+		final double z0 = z - cellZ + unskew;
+		final long i = (long)cellX;
+		final long j = (long)cellY;
+		final long k = (long)cellZ;
+		
+		/*Finds the tetrahedron by ordering the offsets*/
+		final int firstX, firstY, firstZ;
+		final int secondX, secondY, secondZ;
+		
+		if (x0 >= y0) {
+			if (y0 >= z0) {
+				firstX = 1; firstY = 0; firstZ = 0;
+				secondX = 1; secondY = 1; secondZ = 0;
+			} else if (x0 >= z0) {
+				firstX = 1; firstY = 0; firstZ = 0;
+				secondX = 1; secondY = 0; secondZ = 1;
+			} else {
+				firstX = 0; firstY = 0; firstZ = 1;
+				secondX = 1; secondY = 0; secondZ = 1;
+			}
+		} else {
+			if (y0 < z0) {
+				firstX = 0; firstY = 0; firstZ = 1;
+				secondX = 0; secondY = 1; secondZ = 1;
+			} else if (x0 < z0) {
+				firstX = 0; firstY = 1; firstZ = 0;
+				secondX = 0; secondY = 1; secondZ = 1;
+			} else {
+				firstX = 0; firstY = 1; firstZ = 0;
+				secondX = 1; secondY = 1; secondZ = 0;
+			}
+		}
+		
+		final double x1 = x0 - firstX + UNSKEW_3D;
+		final double y1 = y0 - firstY + UNSKEW_3D;
+		final double z1 = z0 - firstZ + UNSKEW_3D;
+		final double x2 = x0 - secondX + 2 * UNSKEW_3D;
+		final double y2 = y0 - secondY + 2 * UNSKEW_3D;
+		final double z2 = z0 - secondZ + 2 * UNSKEW_3D;
+		final double x3 = x0 - 1 + 3 * UNSKEW_3D;
+		final double y3 = y0 - 1 + 3 * UNSKEW_3D;
+		final double z3 = z0 - 1 + 3 * UNSKEW_3D;
+		
+		final double sum = corner(i, j, k, x0, y0, z0)
+				+ corner(i + firstX, j + firstY, k + firstZ, x1, y1, z1)
+				+ corner(i + secondX, j + secondY, k + secondZ, x2, y2, z2)
+				+ corner(i + 1, j + 1, k + 1, x3, y3, z3);
+				
+		return clamp(sum * SCALE_3D);
+	}
+	
+	/**
+	 * Returns the seed.
+	 * @return The seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.noise;
+
+/**
+ * Hash map from packed long chunk coordinates to tiles which also keeps the entries in least recently used order.
+ * The keys are stored as primitives, so no Long objects are created on lookups.
+ * Entries without a tile are placeholders for tiles which are still being generated.
+ * This class is not thread-safe.
+ * @author Sogomn
+ *
+ */
+final class TileMap {
+	
+	private Entry[] buckets;
+	private int size;
+	
+	/*
+	 * Sentinel of the circular LRU list; head.after is the least recently used entry
+	 */
+	private final Entry head;
+	
+	private static final int INITIAL_CAPACITY = 64;
+	
+	public TileMap() {
+		buckets = new Entry[INITIAL_CAPACITY];
+		head = new Entry(0, null);
+		head.before = head;
+		head.after = head;
+	}
+	
+	private static int hash(final long key) {
+		final long mixed = key * 0x9E3779B97F4A7C15L;
+		
+		return (int)(mixed ^ (mixed >>> 32));
+	}
+	
+	private int indexOf(final long key, final int length) {
+		return hash(key) & (length - 1);
+	}
+	
+	private void resize() {
+		final Entry[] resized = new Entry[buckets.length * 2];
+		
+		for (Entry entry : buckets) {
+			while (entry != null) {
+				final Entry next = entry.next;
+				final int index = indexOf(entry.key, resized.length);
+				
+				entry.next = resized[index];
+				resized[index] = entry;
+				entry = next;
+			}
+		}
+		
+		buckets = resized;
+	}
+	
+	private void unlink(final Entry entry) {
+		entry.before.after = entry.after;
+		entry.after.before = entry.before;
+	}
+	
+	private void linkLast(final Entry entry) {
+		entry.before = head.before;
+		entry.after = head;
+		head.before.after = entry;
+		head.before = entry;
+	}
+	
+	/**
+	 * Returns the entry with the given key without changing the order.
+	 */
+	Entry get(final long key) {
+		Entry entry = buckets[indexOf(key, buckets.length)];
+		
+		while (entry != null && entry.key != key) {
+			entry = entry.next;
+		}
+		
+		return entry;
+	}
+	
+	/**
+	 * Marks the entry as the most recently used one.
+	 */
+	void touch(final Entry entry) {
+		unlink(entry);
+		linkLast(entry);
+	}
+	
+	/**
+	 * Adds a new entry with the given key. There must not be an entry with that key yet.
+	 */
+	Entry put(final long key, final float[] tile) {
+		if (size >= buckets.length * 3 / 4) {
+			resize();
+		}
+		
+		final int index = indexOf(key, buckets.length);
+		final Entry entry = new Entry(key, tile);
+		
+		entry.next = buckets[index];
+		buckets[index] = entry;
+		size++;
+		linkLast(entry);
+		
+		return entry;
+	}
+	
+	void remove(final Entry entry) {
+		final int index = indexOf(entry.key, buckets.length);
+		
+		Entry previous = null;
+		Entry current = buckets[index];
+		
+		while (current != null && current != entry) {
+			previous = current;
+			current = current.next;
+		}
+		
+		if (current == null) {
+			return;
+		}
+		
+		if (previous == null) {
+			buckets[index] = current.next;
+		} else {
+			previous.next = current.next;
+		}
+		
+		size--;
+		unlink(entry);
+	}
+	
+	/**
+	 * Returns the least recently used entry which holds a tile or null if there is none.
+	 */
+	Entry eldest() {
+		Entry entry = head.after;
+		
+		while (entry != head && entry.tile == null) {
+			entry = entry.after;
+		}
+		
+		return entry == head ? null : entry;
+	}
+	
+	void clear() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = null;
+		}
+		
+		size = 0;
+		head.before = head;
+		head.after = head;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	static final class Entry {
+		
+		final long key;
+		float[] tile;
+		
+		private Entry next, before, after;
+		
+		private Entry(final long key, final float[] tile) {
+			this.key = key;
+			this.tile = tile;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.server;
+
+import de.sogomn.engine.IUpdatable;
+import de.sogomn.engine.util.AbstractListenerContainer;
+
+/**
+ * An isolated simulation (e.g. one match) which is updated with a fixed tick rate.
+ * The listeners (the world, a Scheduler, ...) are always updated with the same delta, no matter how long a tick took.
+ * A room is usually ticked by a RoomHost but it can also be ticked manually.
+ * @author Sogomn
+ *
+ */
+public final class Room extends AbstractListenerContainer<IUpdatable> {
+	
+	private String name;
+	private double tickRate;
+	private long tickInterval;
+	
+	volatile RoomHost host;
+	volatile int generation;
+	
+	/*Guarded by the tick lock*/
+	final Object tickLock = new Object();
+	int tickedGeneration;
+	long nextTick;
+	
+	private volatile long ticks, skippedTicks;
+	private volatile double lastTickTime, averageTickTime, maxTickTime;
+	
+	private static final double NANOSECONDS_PER_SECOND = 1_000_000_000.0;
+	private static final double SMOOTHING = 0.1;
+	
+	/**
+	 * Constructs a new Room object.
+	 * @param name The name of the room, used in the statistics
+	 * @param tickRate The amount of ticks per second
+	 */
+	public Room(final String name, final double tickRate) {
+		if (tickRate <= 0) {
+			throw new IllegalArgumentException("Tick rate must be positive: " + tickRate);
+		}
+		
+		this.name = name;
+		this.tickRate = tickRate;
+		
+		tickInterval = (long)(NANOSECONDS_PER_SECOND / tickRate);
+		averageTickTime = Double.NaN;
+	}
+	
+	void record(final long nanoseconds) {
+		final double seconds = nanoseconds / NANOSECONDS_PER_SECOND;
+		
+		lastTickTime = seconds;
+		averageTickTime = Double.isNaN(averageTickTime) ? seconds : averageTickTime + SMOOTHING * (seconds - averageTickTime);
+		maxTickTime = Math.max(maxTickTime, seconds);
+	}
+	
+	void skip(final long count) {
+		skippedTicks += count;
+	}
+	
+	long getTickIntervalNanos() {
+		return tickInterval;
+	}
+	
+	/**
+	 * Updates all listeners once with the fixed delta of the room.
+	 */
+	public void tick() {
+		final double delta = 1 / tickRate;
+		
+		notifyListeners(updatable -> updatable.update(delta));
+		
+		ticks++;
+	}
+	
+	/**
+	 * Returns a snapshot of the tick statistics of this room.
+	 * @return The statistics
+	 */
+	public RoomStats getStats() {
+		return new RoomStats(name, tickRate, ticks, skippedTicks, lastTickTime, averageTickTime, maxTickTime);
+	}
+	
+	/**
+	 * Returns the name of the room.
+	 * @return The name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the amount of ticks per second.
+	 * @return The tick rate
+	 */
+	public double getTickRate() {
+		return tickRate;
+	}
+	
+	/**
+	 * Returns the host currently ticking this room.
+	 * @return The host or null if the room is not hosted
+	 */
+	public RoomHost getHost() {
+		return host;
+	}
+	
+	/**
+	 * Returns the fraction of the tick interval which is used by an average tick.
+	 * Values above one mean the room can not keep up with its tick rate.
+	 * @return The load or zero if the room has not been ticked yet
+	 */
+	public double getLoad() {
+		final double average = averageTickTime;
+		
+		return Double.isNaN(average) ? 0 : average * tickRate;
+	}
+	
+}
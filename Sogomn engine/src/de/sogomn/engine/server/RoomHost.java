@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ticks many rooms on a shared pool of worker threads without a Screen.
+ * The rooms are executed by a work-stealing pool which has one thread per core by default.
+ * A single timer thread hands every room to the pool when its next tick is due. A room is never ticked by two threads at once.
+ * If a room falls behind by more than the maximum lag, the missed ticks are skipped instead of being caught up.
+ * New rooms are rejected while the host is overloaded. A room whose listener throws anything is removed and the
+ * throwable is printed. A room which is removed and added again waits for its current tick to finish.
+ * @author Sogomn
+ *
+ */
+public final class RoomHost {
+	
+	private ForkJoinPool pool;
+	private ScheduledExecutorService timer;
+	private CopyOnWriteArrayList<Room> rooms;
+	private int parallelism;
+	
+	private volatile long maxLag;
+	private volatile double maxLoad;
+	private volatile boolean open;
+	
+	private static final double NANOSECONDS_PER_SECOND = 1_000_000_000.0;
+	private static final double DEFAULT_MAX_LAG = 0.25;
+	private static final double DEFAULT_MAX_LOAD = 0.9;
+	
+	/**
+	 * Constructs a new RoomHost object with the given amount of worker threads.
+	 * @param parallelism The amount of worker threads
+	 */
+	public RoomHost(final int parallelism) {
+		this.parallelism = parallelism;
+		
+		pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+			final Thread thread = new Thread(runnable, "RoomHost timer");
+			
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+		rooms = new CopyOnWriteArrayList<Room>();
+		maxLag = (long)(DEFAULT_MAX_LAG * NANOSECONDS_PER_SECOND);
+		maxLoad = DEFAULT_MAX_LOAD;
+		open = true;
+	}
+	
+	/**
+	 * Constructs a new RoomHost object with one worker thread per available processor.
+	 */
+	public RoomHost() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/*
+	 * The generation makes sure that a room which has been removed and added again is not ticked by two chains of tasks.
+	 * The tick lock makes the new chain wait for a tick of the old one which is still running.
+	 */
+	private void execute(final Room room, final int generation) {
+		final long delay;
+		
+		Throwable failure = null;
+		
+		synchronized (room.tickLock) {
+			if (!open || room.host != this || room.generation != generation) {
+				return;
+			}
+			
+			final long interval = room.getTickIntervalNanos();
+			final long start = System.nanoTime();
+			
+			if (room.tickedGeneration != generation) {
+				room.tickedGeneration = generation;
+				room.nextTick = start;
+			}
+			
+			final long lag = start - room.nextTick;
+			
+			if (lag > maxLag) {
+				final long missed = lag / interval;
+				
+				room.skip(missed);
+				room.nextTick += missed * interval;
+			}
+			
+			try {
+				room.tick();
+			} catch (final Throwable ex) {
+				failure = ex;
+			}
+			
+			final long end = System.nanoTime();
+			
+			room.record(end - start);
+			room.nextTick += interval;
+			delay = room.nextTick - end;
+		}
+		
+		if (failure != null) {
+			failure.printStackTrace();
+			
+			synchronized (this) {
+				if (room.generation == generation) {
+					remove(room);
+				}
+			}
+		} else {
+			schedule(room, generation, delay);
+		}
+	}
+	
+	private void schedule(final Room room, final int generation, final long delay) {
+		/*
+		 * Always submitting from the timer thread keeps a room which is behind from starving the others
+		 * through the local queue of its worker thread
+		 */
+		try {
+			timer.schedule(() -> pool.execute(() -> execute(room, generation)), Math.max(delay, 0), TimeUnit.NANOSECONDS);
+		} catch (final RejectedExecutionException ex) {
+			//...
+		}
+	}
+	
+	/**
+	 * Adds a room to the host. Its first tick is executed immediately.
+	 * @param room The room
+	 * @return True if the room has been added; false if the host is closed or overloaded or the room is already hosted
+	 */
+	public synchronized boolean add(final Room room) {
+		if (!open || room.host != null || isOverloaded()) {
+			return false;
+		}
+		
+		room.host = this;
+		room.generation++;
+		rooms.add(room);
+		
+		schedule(room, room.generation, 0);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes a room from the host. A tick which is currently executed is finished.
+	 * @param room The room
+	 */
+	public synchronized void remove(final Room room) {
+		if (room.host == this) {
+			room.host = null;
+			rooms.remove(room);
+		}
+	}
+	
+	/**
+	 * Stops ticking all rooms and shuts down the threads.
+	 */
+	public synchronized void close() {
+		if (!open) {
+			return;
+		}
+		
+		open = false;
+		
+		for (final Room room : rooms) {
+			room.host = null;
+		}
+		
+		rooms.clear();
+		timer.shutdownNow();
+		pool.shutdown();
+	}
+	
+	/**
+	 * Returns a snapshot of the statistics of every hosted room.
+	 * @return The statistics
+	 */
+	public List<RoomStats> getStats() {
+		final ArrayList<RoomStats> stats = new ArrayList<RoomStats>(rooms.size());
+		
+		for (final Room room : rooms) {
+			stats.add(room.getStats());
+		}
+		
+		return stats;
+	}
+	
+	/**
+	 * Returns the fraction of the worker threads which is needed to run all rooms at their tick rates.
+	 * @return The load
+	 */
+	public double getLoad() {
+		double load = 0;
+		
+		for (final Room room : rooms) {
+			load += room.getLoad();
+		}
+		
+		return load / parallelism;
+	}
+	
+	/**
+	 * Returns true if the load exceeds the maximum load.
+	 * @return The state
+	 */
+	public boolean isOverloaded() {
+		return getLoad() > maxLoad;
+	}
+	
+	/**
+	 * Sets the lag after which a room skips its missed ticks. The default is 0.25 seconds.
+	 * @param maxLag The maximum lag in seconds
+	 */
+	public void setMaxLag(final double maxLag) {
+		this.maxLag = (long)(maxLag * NANOSECONDS_PER_SECOND);
+	}
+	
+	/**
+	 * Sets the load above which new rooms are rejected. The default is 0.9.
+	 * @param maxLoad The maximum load
+	 */
+	public void setMaxLoad(final double maxLoad) {
+		this.maxLoad = maxLoad;
+	}
+	
+	/**
+	 * Returns the amount of hosted rooms.
+	 * @return The room count
+	 */
+	public int getRoomCount() {
+		return rooms.size();
+	}
+	
+	/**
+	 * Returns the amount of worker threads.
+	 * @return The parallelism
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * Returns true if the host is open, false otherwise.
+	 * @return The state
+	 */
+	public boolean isOpen() {
+		return open;
+	}
+	
+}
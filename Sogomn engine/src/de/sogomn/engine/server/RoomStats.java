@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.server;
+
+/**
+ * An immutable snapshot of the tick statistics of a Room.
+ * @author Sogomn
+ *
+ */
+public final class RoomStats {
+	
+	private final String name;
+	private final double tickRate;
+	private final long ticks, skippedTicks;
+	private final double lastTickTime, averageTickTime, maxTickTime;
+	
+	private static final double MILLISECONDS_PER_SECOND = 1000.0;
+	
+	RoomStats(final String name, final double tickRate, final long ticks, final long skippedTicks, final double lastTickTime, final double averageTickTime, final double maxTickTime) {
+		this.name = name;
+		this.tickRate = tickRate;
+		this.ticks = ticks;
+		this.skippedTicks = skippedTicks;
+		this.lastTickTime = lastTickTime;
+		this.averageTickTime = averageTickTime;
+		this.maxTickTime = maxTickTime;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s: %d ticks at %.1f/s, %d skipped, tick time %.2fms (average %.2fms, max %.2fms), load %.0f%%",
+				name, ticks, tickRate, skippedTicks,
+				lastTickTime * MILLISECONDS_PER_SECOND, averageTickTime * MILLISECONDS_PER_SECOND, maxTickTime * MILLISECONDS_PER_SECOND,
+				getLoad() * 100);
+	}
+	
+	/**
+	 * Returns the name of the room.
+	 * @return The name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the amount of ticks per second the room is supposed to run at.
+	 * @return The tick rate
+	 */
+	public double getTickRate() {
+		return tickRate;
+	}
+	
+	/**
+	 * Returns the amount of executed ticks.
+	 * @return The tick count
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+	
+	/**
+	 * Returns the amount of ticks which have been skipped because the room fell behind too far.
+	 * @return The skipped tick count
+	 */
+	public long getSkippedTicks() {
+		return skippedTicks;
+	}
+	
+	/**
+	 * Returns the duration of the last tick.
+	 * @return The tick time in seconds
+	 */
+	public double getLastTickTime() {
+		return lastTickTime;
+	}
+	
+	/**
+	 * Returns the smoothed duration of a tick.
+	 * @return The tick time in seconds or NaN if the room has not been ticked yet
+	 */
+	public double getAverageTickTime() {
+		return averageTickTime;
+	}
+	
+	/**
+	 * Returns the duration of the longest tick.
+	 * @return The tick time in seconds
+	 */
+	public double getMaxTickTime() {
+		return maxTickTime;
+	}
+	
+	/**
+	 * Returns the fraction of the tick interval which is used by an average tick.
+	 * @return The load or zero if the room has not been ticked yet
+	 */
+	public double getLoad() {
+		return Double.isNaN(averageTickTime) ? 0 : averageTickTime * tickRate;
+	}
+	
+}
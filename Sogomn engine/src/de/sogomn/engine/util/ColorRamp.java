@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.util;
+
+import java.util.Arrays;
+
+/**
+ * Maps values of a range to ARGB colors through a precomputed lookup table.
+ * The colors are spread evenly over the range and interpolated linearly in between.
+ * Values outside of the range get the color of the nearest end. Objects of this class are immutable.
+ * @author Sogomn
+ *
+ */
+public final class ColorRamp {
+	
+	final int[] table;
+	final double min;
+	final double scale;
+	
+	private static final int DEFAULT_SIZE = 256;
+	private static final int BLACK = 0xFF000000;
+	private static final int WHITE = 0xFFFFFFFF;
+	
+	private ColorRamp(final int[] table, final double min, final double max) {
+		this.table = table;
+		this.min = min;
+		
+		scale = table.length / (max - min);
+	}
+	
+	/**
+	 * Constructs a new ColorRamp object which interpolates between the given colors.
+	 * @param min The smallest value of the range
+	 * @param max The largest value of the range
+	 * @param colors The ARGB colors, from the minimum to the maximum; at least one
+	 */
+	public ColorRamp(final double min, final double max, final int... colors) {
+		this(createTable(colors, DEFAULT_SIZE), min, max);
+	}
+	
+	private static int interpolate(final int one, final int two, final double weight, final int shift) {
+		final int first = (one >>> shift) & 0xFF;
+		final int second = (two >>> shift) & 0xFF;
+		final int value = (int)Math.round(first + (second - first) * weight);
+		
+		return value << shift;
+	}
+	
+	private static int[] createTable(final int[] colors, final int size) {
+		final int[] table = new int[size];
+		
+		if (colors.length == 1) {
+			Arrays.fill(table, colors[0]);
+			
+			return table;
+		}
+		
+		final double segments = colors.length - 1;
+		
+		for (int i = 0; i < size; i++) {
+			final double position = i * segments / (size - 1);
+			final int index = Math.min((int)position, colors.length - 2);
+			final double weight = position - index;
+			final int one = colors[index];
+			final int two = colors[index + 1];
+			
+			table[i] = interpolate(one, two, weight, 24) | interpolate(one, two, weight, 16) | interpolate(one, two, weight, 8) | interpolate(one, two, weight, 0);
+		}
+		
+		return table;
+	}
+	
+	/**
+	 * Creates a ramp which uses the given lookup table as it is.
+	 * The first entry is used for the minimum and the last one for the maximum.
+	 * @param min The smallest value of the range
+	 * @param max The largest value of the range
+	 * @param table The ARGB colors
+	 * @return The ramp
+	 */
+	public static ColorRamp fromTable(final double min, final double max, final int[] table) {
+		return new ColorRamp(table.clone(), min, max);
+	}
+	
+	/**
+	 * Creates a ramp from black to white.
+	 * @param min The smallest value of the range
+	 * @param max The largest value of the range
+	 * @return The ramp
+	 */
+	public static ColorRamp grayscale(final double min, final double max) {
+		return new ColorRamp(min, max, BLACK, WHITE);
+	}
+	
+	/**
+	 * Returns the color for the given value.
+	 * @param value The value
+	 * @return The ARGB color
+	 */
+	public int getColor(final double value) {
+		final int index = (int)((value - min) * scale);
+		
+		return table[Math.max(Math.min(index, table.length - 1), 0)];
+	}
+	
+	/**
+	 * Returns the amount of entries in the lookup table.
+	 * @return The size
+	 */
+	public int getSize() {
+		return table.length;
+	}
+	
+}
@@ -34,17 +34,23 @@ import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.geom.Area;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.stream.IntStream;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageOutputStream;
 
+import de.sogomn.engine.noise.INoise2D;
+
 /**
  * This class holds some useful methods in terms of images.
  * @author Sogomn
@@ -309,4 +315,114 @@ public final class ImageUtils {
 		return area;
 	}
 	
+	/*
+	 * Sub-images share the data buffer of their parent with an offset and a wider scanline, so only images
+	 * whose pixels are stored exactly row by row from the start of the buffer can be written directly
+	 */
+	private static boolean isCompatible(final BufferedImage image, final int width, final int height) {
+		if (image == null || image.getType() != BufferedImage.TYPE_INT_ARGB || image.getWidth() != width || image.getHeight() != height) {
+			return false;
+		}
+		
+		final WritableRaster raster = image.getRaster();
+		
+		if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+			return false;
+		}
+		
+		final SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel)raster.getSampleModel();
+		
+		return sampleModel.getScanlineStride() == width && raster.getDataBuffer().getOffset() == 0
+				&& raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+	}
+	
+	/**
+	 * Renders a field of values into an image by mapping every value to a color of the given ramp.
+	 * The pixels are written straight into the data buffer of the image, and the rows are processed in parallel.
+	 * Java2D can no longer accelerate an image once its data buffer has been accessed like this. Drawing it still works.
+	 * @param field The values, row by row; at least width * height
+	 * @param width The amount of values per row
+	 * @param height The amount of rows
+	 * @param ramp The color ramp
+	 * @param target The image to reuse; a new one is created if it is null, is not a TYPE_INT_ARGB image of the given size
+	 * or does not own its whole data buffer (e.g. a sub-image)
+	 * @return The image
+	 * @throws IllegalArgumentException If the field holds fewer than width * height values
+	 */
+	public static BufferedImage renderField(final float[] field, final int width, final int height, final ColorRamp ramp, final BufferedImage target) {
+		if (field.length < (long)width * height) {
+			throw new IllegalArgumentException("Field holds " + field.length + " values, " + width + " * " + height + " are needed");
+		}
+		
+		final BufferedImage image = isCompatible(target, width, height) ? target : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		final DataBufferInt buffer = (DataBufferInt)image.getRaster().getDataBuffer();
+		final int[] pixels = buffer.getData();
+		final int[] table = ramp.table;
+		final int maxIndex = table.length - 1;
+		final double min = ramp.min;
+		final double scale = ramp.scale;
+		
+		IntStream.range(0, height).parallel().forEach(row -> {
+			final int start = row * width;
+			final int end = start + width;
+			
+			for (int i = start; i < end; i++) {
+				final int index = (int)((field[i] - min) * scale);
+				
+				pixels[i] = table[Math.max(Math.min(index, maxIndex), 0)];
+			}
+		});
+		
+		return image;
+	}
+	
+	/**
+	 * Renders a field of values into a new image. See the other method for details.
+	 * @param field The values, row by row
+	 * @param width The amount of values per row
+	 * @param height The amount of rows
+	 * @param ramp The color ramp
+	 * @return The image
+	 */
+	public static BufferedImage renderField(final float[] field, final int width, final int height, final ColorRamp ramp) {
+		return renderField(field, width, height, ramp, null);
+	}
+	
+	/**
+	 * Samples a region of the given noise in parallel and renders it into an image, e.g. for previews or minimaps.
+	 * Every pixel is one sample. The noise must be safe to use from several threads.
+	 * @param noise The noise
+	 * @param x The x coordinate of the first sample
+	 * @param y The y coordinate of the first sample
+	 * @param step The distance between two samples
+	 * @param width The image width
+	 * @param height The image height
+	 * @param ramp The color ramp
+	 * @param target The image to reuse; a new one is created if it is null, is not a TYPE_INT_ARGB image of the given size
+	 * or does not own its whole data buffer (e.g. a sub-image)
+	 * @return The image
+	 */
+	public static BufferedImage renderNoise(final INoise2D noise, final double x, final double y, final double step, final int width, final int height, final ColorRamp ramp, final BufferedImage target) {
+		final float[] field = new float[width * height];
+		
+		noise.fillParallel(field, x, y, step, width, height);
+		
+		return renderField(field, width, height, ramp, target);
+	}
+	
+	/**
+	 * Samples a region of the given noise in parallel and renders it into a new image. See the other method for details.
+	 * @param noise The noise
+	 * @param x The x coordinate of the first sample
+	 * @param y The y coordinate of the first sample
+	 * @param step The distance between two samples
+	 * @param width The image width
+	 * @param height The image height
+	 * @param ramp The color ramp
+	 * @return The image
+	 */
+	public static BufferedImage renderNoise(final INoise2D noise, final double x, final double y, final double step, final int width, final int height, final ColorRamp ramp) {
+		return renderNoise(noise, x, y, step, width, height, ramp, null);
+	}
+	
 }
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.util;
+
+import java.awt.geom.AffineTransform;
+
+/**
+ * A 2D affine transform which maps (x|y) to (m00 * x + m01 * y + m02 | m10 * x + m11 * y + m12).
+ * The inverse is computed whenever the transform is set, so points can be mapped in both directions without creating objects.
+ * Useful for converting between world and screen coordinates, e.g. for picking.
+ * @author Sogomn
+ *
+ */
+public final strictfp class Transform2D {
+	
+	private double m00, m01, m02;
+	private double m10, m11, m12;
+	
+	private double inverse00, inverse01, inverse02;
+	private double inverse10, inverse11, inverse12;
+	
+	/**
+	 * Constructs a new identity transform.
+	 */
+	public Transform2D() {
+		setToIdentity();
+	}
+	
+	private void invert() {
+		final double determinant = m00 * m11 - m01 * m10;
+		
+		inverse00 = m11 / determinant;
+		inverse01 = -m01 / determinant;
+		inverse10 = -m10 / determinant;
+		inverse11 = m00 / determinant;
+		inverse02 = -(inverse00 * m02 + inverse01 * m12);
+		inverse12 = -(inverse10 * m02 + inverse11 * m12);
+	}
+	
+	/**
+	 * Sets the entries of the transform. The order is the same as in the AffineTransform class.
+	 * @param m00 The x scaling
+	 * @param m10 The y shearing
+	 * @param m01 The x shearing
+	 * @param m11 The y scaling
+	 * @param m02 The x translation
+	 * @param m12 The y translation
+	 */
+	public void set(final double m00, final double m10, final double m01, final double m11, final double m02, final double m12) {
+		this.m00 = m00;
+		this.m10 = m10;
+		this.m01 = m01;
+		this.m11 = m11;
+		this.m02 = m02;
+		this.m12 = m12;
+		
+		invert();
+	}
+	
+	/**
+	 * Resets the transform to the identity.
+	 */
+	public void setToIdentity() {
+		set(1, 0, 0, 1, 0, 0);
+	}
+	
+	/**
+	 * Copies the entries into the given AffineTransform object, e.g. to pass them to a Graphics2D object.
+	 * @param target The AffineTransform object
+	 * @return The target
+	 */
+	public AffineTransform copyTo(final AffineTransform target) {
+		target.setTransform(m00, m10, m01, m11, m02, m12);
+		
+		return target;
+	}
+	
+	/**
+	 * Transforms the given point and stores the result in the given target. The target may be the source.
+	 * @param source The point
+	 * @param target The vector the result is written to
+	 * @return The target
+	 */
+	public Vector2D transform(final Vector2D source, final Vector2D target) {
+		final double x = source.getX();
+		final double y = source.getY();
+		
+		target.set(m00 * x + m01 * y + m02, m10 * x + m11 * y + m12);
+		
+		return target;
+	}
+	
+	/**
+	 * Transforms the given point back with the inverse transform and stores the result in the given target. The target may be the source.
+	 * If the transform can not be inverted (e.g. a scale of zero), the result is NaN.
+	 * @param source The point
+	 * @param target The vector the result is written to
+	 * @return The target
+	 */
+	public Vector2D inverseTransform(final Vector2D source, final Vector2D target) {
+		final double x = source.getX();
+		final double y = source.getY();
+		
+		target.set(inverse00 * x + inverse01 * y + inverse02, inverse10 * x + inverse11 * y + inverse12);
+		
+		return target;
+	}
+	
+	/**
+	 * Returns the x coordinate of the given point after the transform.
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @return The transformed x coordinate
+	 */
+	public double transformX(final double x, final double y) {
+		return m00 * x + m01 * y + m02;
+	}
+	
+	/**
+	 * Returns the y coordinate of the given point after the transform.
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @return The transformed y coordinate
+	 */
+	public double transformY(final double x, final double y) {
+		return m10 * x + m11 * y + m12;
+	}
+	
+	/**
+	 * Returns the x coordinate of the given point after the inverse transform.
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @return The x coordinate transformed back
+	 */
+	public double inverseTransformX(final double x, final double y) {
+		return inverse00 * x + inverse01 * y + inverse02;
+	}
+	
+	/**
+	 * Returns the y coordinate of the given point after the inverse transform.
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @return The y coordinate transformed back
+	 */
+	public double inverseTransformY(final double x, final double y) {
+		return inverse10 * x + inverse11 * y + inverse12;
+	}
+	
+}
@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright 2016 Johannes Boczek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package de.sogomn.engine.util;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Stores many 2D vectors (e.g. the positions or velocities of entities) as a structure of arrays.
+ * The x and y coordinates are kept in two parallel double arrays instead of one Vector2D object per vector,
+ * so the bulk operations run over contiguous memory in tight loops which the JIT can vectorize.
+ * Parallel buffers split large bulk operations into blocks which are processed by the common ForkJoinPool.
+ * Vectors are addressed by their index. Removing a vector moves the last one into its place.
+ * This class is not thread-safe.
+ * @author Sogomn
+ *
+ */
+public final class Vec2Buffer {
+	
+	private double[] xs, ys;
+	private int size;
+	private boolean parallel;
+	
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final int BLOCK_SIZE = 8192;
+	private static final int PARALLEL_THRESHOLD = 2 * BLOCK_SIZE;
+	
+	/**
+	 * Constructs a new Vec2Buffer object with the given initial capacity.
+	 * @param capacity The initial capacity
+	 */
+	public Vec2Buffer(final int capacity) {
+		xs = new double[Math.max(capacity, 1)];
+		ys = new double[Math.max(capacity, 1)];
+	}
+	
+	/**
+	 * Constructs a new Vec2Buffer object with a default initial capacity.
+	 */
+	public Vec2Buffer() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	private void forEachBlock(final IBlockOperation operation) {
+		if (!parallel || size < PARALLEL_THRESHOLD) {
+			operation.apply(0, size);
+			
+			return;
+		}
+		
+		final int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		
+		IntStream.range(0, blocks).parallel().forEach(block -> {
+			final int start = block * BLOCK_SIZE;
+			final int end = Math.min(start + BLOCK_SIZE, size);
+			
+			operation.apply(start, end);
+		});
+	}
+	
+	private void checkSize(final Vec2Buffer other) {
+		if (other.size < size) {
+			throw new IllegalArgumentException("Buffer too small: " + other.size + " < " + size);
+		}
+	}
+	
+	/**
+	 * Appends a vector.
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @return The index of the vector
+	 */
+	public int add(final double x, final double y) {
+		if (size == xs.length) {
+			xs = Arrays.copyOf(xs, size * 2);
+			ys = Arrays.copyOf(ys, size * 2);
+		}
+		
+		xs[size] = x;
+		ys[size] = y;
+		
+		return size++;
+	}
+	
+	/**
+	 * Removes the vector with the given index by moving the last vector into its place.
+	 * @param index The index
+	 * @return The old index of the moved vector or -1 if the last vector has been removed
+	 */
+	public int remove(final int index) {
+		final int last = size - 1;
+		
+		if (index < 0 || index > last) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		
+		size--;
+		
+		if (index == last) {
+			return -1;
+		}
+		
+		xs[index] = xs[last];
+		ys[index] = ys[last];
+		
+		return last;
+	}
+	
+	/**
+	 * Removes all vectors. The capacity stays the same.
+	 */
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * Sets the coordinates of the vector with the given index.
+	 * @param index The index
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 */
+	public void set(final int index, final double x, final double y) {
+		xs[index] = x;
+		ys[index] = y;
+	}
+	
+	/**
+	 * Copies the vector with the given index into the given target.
+	 * @param index The index
+	 * @param target The target
+	 * @return The target
+	 */
+	public Vector2D get(final int index, final Vector2D target) {
+		target.set(xs[index], ys[index]);
+		
+		return target;
+	}
+	
+	/**
+	 * Adds the vectors of the given buffer multiplied by the delta time to the vectors of this buffer, e.g. velocities to positions.
+	 * @param velocities The buffer to be added; at least as large as this one
+	 * @param delta The delta time
+	 */
+	public void integrate(final Vec2Buffer velocities, final double delta) {
+		checkSize(velocities);
+		
+		final double[] xs = this.xs, ys = this.ys;
+		final double[] velocitiesX = velocities.xs, velocitiesY = velocities.ys;
+		
+		forEachBlock((start, end) -> {
+			for (int i = start; i < end; i++) {
+				xs[i] += velocitiesX[i] * delta;
+				ys[i] += velocitiesY[i] * delta;
+			}
+		});
+	}
+	
+	/**
+	 * Adds the given vector to all vectors of this buffer, e.g. a gravity impulse to all velocities.
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 */
+	public void translate(final double x, final double y) {
+		final double[] xs = this.xs, ys = this.ys;
+		
+		forEachBlock((start, end) -> {
+			for (int i = start; i < end; i++) {
+				xs[i] += x;
+				ys[i] += y;
+			}
+		});
+	}
+	
+	/**
+	 * Multiplies all vectors with the given factor, e.g. to apply friction to velocities.
+	 * @param factor The factor
+	 */
+	public void scale(final double factor) {
+		final double[] xs = this.xs, ys = this.ys;
+		
+		forEachBlock((start, end) -> {
+			for (int i = start; i < end; i++) {
+				xs[i] *= factor;
+				ys[i] *= factor;
+			}
+		});
+	}
+	
+	/**
+	 * Clamps all vectors to the given rectangle, e.g. to keep entities inside the world.
+	 * @param minX The smallest x coordinate
+	 * @param minY The smallest y coordinate
+	 * @param maxX The largest x coordinate
+	 * @param maxY The largest y coordinate
+	 */
+	public void clamp(final double minX, final double minY, final double maxX, final double maxY) {
+		final double[] xs = this.xs, ys = this.ys;
+		
+		forEachBlock((start, end) -> {
+			for (int i = start; i < end; i++) {
+				xs[i] = Math.max(Math.min(xs[i], maxX), minX);
+				ys[i] = Math.max(Math.min(ys[i], maxY), minY);
+			}
+		});
+	}
+	
+	/**
+	 * Shortens all vectors which are longer than the given length, e.g. to limit the speed of entities.
+	 * @param maxLength The maximum length
+	 */
+	public void clampLength(final double maxLength) {
+		final double[] xs = this.xs, ys = this.ys;
+		final double maxLengthSquared = maxLength * maxLength;
+		
+		forEachBlock((start, end) -> {
+			for (int i = start; i < end; i++) {
+				final double lengthSquared = xs[i] * xs[i] + ys[i] * ys[i];
+				
+				if (lengthSquared > maxLengthSquared) {
+					final double factor = maxLength / Math.sqrt(lengthSquared);
+					
+					xs[i] *= factor;
+					ys[i] *= factor;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Calculates the squared distances of all vectors to the given point.
+	 * @param x The x coordinate of the point
+	 * @param y The y coordinate of the point
+	 * @param target The array the distances are written to; at least as long as the size
+	 */
+	public void distancesSquared(final double x, final double y, final double[] target) {
+		final double[] xs = this.xs, ys = this.ys;
+		
+		forEachBlock((start, end) -> {
+			for (int i = start; i < end; i++) {
+				final double distanceX = xs[i] - x;
+				final double distanceY = ys[i] - y;
+				
+				target[i] = distanceX * distanceX + distanceY * distanceY;
+			}
+		});
+	}
+	
+	/**
+	 * Finds all vectors within the given radius around a point. This query always runs on the calling thread.
+	 * @param x The x coordinate of the point
+	 * @param y The y coordinate of the point
+	 * @param radius The radius
+	 * @param target The array the indices are written to, in ascending order. Stops when it is full
+	 * @return The amount of indices written
+	 */
+	public int findWithin(final double x, final double y, final double radius, final int[] target) {
+		final double radiusSquared = radius * radius;
+		
+		int found = 0;
+		
+		for (int i = 0; i < size && found < target.length; i++) {
+			final double distanceX = xs[i] - x;
+			final double distanceY = ys[i] - y;
+			
+			if (distanceX * distanceX + distanceY * distanceY <= radiusSquared) {
+				target[found] = i;
+				found++;
+			}
+		}
+		
+		return found;
+	}
+	
+	/**
+	 * Finds the vector which is nearest to the given point. This query always runs on the calling thread.
+	 * @param x The x coordinate of the point
+	 * @param y The y coordinate of the point
+	 * @return The index of the nearest vector or -1 if the buffer is empty
+	 */
+	public int findNearest(final double x, final double y) {
+		double nearestDistance = Double.POSITIVE_INFINITY;
+		int nearest = -1;
+		
+		for (int i = 0; i < size; i++) {
+			final double distanceX = xs[i] - x;
+			final double distanceY = ys[i] - y;
+			final double distance = distanceX * distanceX + distanceY * distanceY;
+			
+			if (distance < nearestDistance) {
+				nearestDistance = distance;
+				nearest = i;
+			}
+		}
+		
+		return nearest;
+	}
+	
+	/**
+	 * Sets whether large bulk operations should be split up and processed in parallel.
+	 * Buffers with fewer than 16384 vectors are always processed by the calling thread.
+	 * @param parallel Whether parallel execution is enabled
+	 */
+	public void setParallel(final boolean parallel) {
+		this.parallel = parallel;
+	}
+	
+	/**
+	 * Returns the x coordinate of the vector with the given index.
+	 * @param index The index
+	 * @return The x coordinate
+	 */
+	public double getX(final int index) {
+		return xs[index];
+	}
+	
+	/**
+	 * Returns the y coordinate of the vector with the given index.
+	 * @param index The index
+	 * @return The y coordinate
+	 */
+	public double getY(final int index) {
+		return ys[index];
+	}
+	
+	/**
+	 * Returns the amount of vectors.
+	 * @return The size
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns whether parallel execution is enabled.
+	 * @return The state
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+	
+	@FunctionalInterface
+	private interface IBlockOperation {
+		
+		void apply(final int start, final int end);
+		
+	}
+	
+}
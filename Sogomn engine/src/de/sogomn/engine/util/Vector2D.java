@@ -20,6 +20,8 @@ package de.sogomn.engine.util;
 /**
  * This class defines a vector. There are several methods to make calculations easier.
  * All methods (exept "add", "set", ...) return a copy instead of the original object.
+ * The methods ending with "Into" and "InPlace" write their result to a given vector or to the vector itself instead,
+ * so no objects are created in hot loops.
  * @author Sogomn
  *
  */
@@ -106,6 +108,145 @@ public final strictfp class Vector2D {
 		return distance(this, other);
 	}
 	
+	/**
+	 * Rotates the vector and stores the result in the given target. The target may be this vector.
+	 * @param degrees The angle of the rotation in degrees
+	 * @param target The vector the result is written to
+	 * @return The target
+	 */
+	public Vector2D rotateInto(final double degrees, final Vector2D target) {
+		final double radians = Math.toRadians(degrees);
+		
+		return rotateInto(Math.cos(radians), Math.sin(radians), target);
+	}
+	
+	/**
+	 * Rotates the vector by a precomputed rotation and stores the result in the given target. The target may be this vector.
+	 * @param rotation The rotation
+	 * @param target The vector the result is written to
+	 * @return The target
+	 */
+	public Vector2D rotateInto(final Rotation rotation, final Vector2D target) {
+		return rotateInto(rotation.cos, rotation.sin, target);
+	}
+	
+	private Vector2D rotateInto(final double cos, final double sin, final Vector2D target) {
+		final double newX = x * cos - y * sin;
+		final double newY = y * cos + x * sin;
+		
+		target.set(newX, newY);
+		
+		return target;
+	}
+	
+	/**
+	 * Rotates the vector itself.
+	 * @param degrees The angle of the rotation in degrees
+	 * @return This vector
+	 */
+	public Vector2D rotateInPlace(final double degrees) {
+		return rotateInto(degrees, this);
+	}
+	
+	/**
+	 * Rotates the vector itself by a precomputed rotation.
+	 * @param rotation The rotation
+	 * @return This vector
+	 */
+	public Vector2D rotateInPlace(final Rotation rotation) {
+		return rotateInto(rotation, this);
+	}
+	
+	/**
+	 * Normalizes the vector and stores the result in the given target. The target may be this vector.
+	 * @param target The vector the result is written to
+	 * @return The target
+	 */
+	public Vector2D normalizeInto(final Vector2D target) {
+		final double length = length();
+		
+		target.set(x / length, y / length);
+		
+		return target;
+	}
+	
+	/**
+	 * Normalizes the vector itself.
+	 * @return This vector
+	 */
+	public Vector2D normalizeInPlace() {
+		return normalizeInto(this);
+	}
+	
+	/**
+	 * Calculates the distance vector to another one and stores it in the given target. The target may be this vector.
+	 * @param other The other vector
+	 * @param target The vector the result is written to
+	 * @return The target
+	 */
+	public Vector2D distanceInto(final Vector2D other, final Vector2D target) {
+		target.set(other.x - x, other.y - y);
+		
+		return target;
+	}
+	
+	/**
+	 * Calculates the length of the distance vector to another one without creating it.
+	 * @param other The other vector
+	 * @return The distance
+	 */
+	public double distanceTo(final Vector2D other) {
+		final double distanceX = other.x - x;
+		final double distanceY = other.y - y;
+		
+		return Math.sqrt(distanceX * distanceX + distanceY * distanceY);
+	}
+	
+	/**
+	 * Calculates the squared length of the vector. Cheaper than "length" when only lengths are compared.
+	 * @return The squared length
+	 */
+	public double lengthSquared() {
+		return x * x + y * y;
+	}
+	
+	/**
+	 * Adds the given vector to this one.
+	 * @param other The vector to be added
+	 * @return This vector
+	 */
+	public Vector2D add(final Vector2D other) {
+		x += other.x;
+		y += other.y;
+		
+		return this;
+	}
+	
+	/**
+	 * Adds the given vector multiplied by the given factor to this one, e.g. the velocity times the delta time to the position.
+	 * @param other The vector to be added
+	 * @param factor The factor
+	 * @return This vector
+	 */
+	public Vector2D addScaled(final Vector2D other, final double factor) {
+		x += other.x * factor;
+		y += other.y * factor;
+		
+		return this;
+	}
+	
+	/**
+	 * Multiplies both coordinates of this vector with the given factor.
+	 * @param factor The factor
+	 * @return This vector
+	 */
+	public Vector2D scaleInPlace(final double factor) {
+		x *= factor;
+		y *= factor;
+		
+		return this;
+	}
+	
 	/**
 	 * Adds the given amount to the x coordinate.
 	 * @param x The amout to be added
@@ -148,6 +289,15 @@ public final strictfp class Vector2D {
 		this.y = y;
 	}
 	
+	/**
+	 * Copies the coordinates of the given vector.
+	 * @param other The vector
+	 */
+	public void set(final Vector2D other) {
+		x = other.x;
+		y = other.y;
+	}
+	
 	/**
 	 * Returns the x coordinate
 	 * @return The x coordinate
@@ -183,12 +333,7 @@ public final strictfp class Vector2D {
 	 * @return A rotated copy of the vector
 	 */
 	public static Vector2D rotate(final Vector2D vector, final double degrees) {
-		final double radians = Math.toRadians(degrees);
-		final double newX = vector.x * Math.cos(radians) - vector.y * Math.sin(radians);
-		final double newY = vector.y * Math.cos(radians) + vector.x * Math.sin(radians);
-		final Vector2D result = new Vector2D(newX, newY);
-		
-		return result;
+		return vector.rotateInto(degrees, new Vector2D());
 	}
 	
 	/**
@@ -231,4 +376,37 @@ public final strictfp class Vector2D {
 		return distance;
 	}
 	
+	/**
+	 * Holds the sine and cosine of an angle so vectors can be rotated by the same angle repeatedly without recomputing them.
+	 * @author Sogomn
+	 *
+	 */
+	public static final class Rotation {
+		
+		private final double degrees;
+		private final double cos, sin;
+		
+		/**
+		 * Constructs a new Rotation object for the given angle.
+		 * @param degrees The angle in degrees
+		 */
+		public Rotation(final double degrees) {
+			this.degrees = degrees;
+			
+			final double radians = Math.toRadians(degrees);
+			
+			cos = Math.cos(radians);
+			sin = Math.sin(radians);
+		}
+		
+		/**
+		 * Returns the angle.
+		 * @return The angle in degrees
+		 */
+		public double getDegrees() {
+			return degrees;
+		}
+		
+	}
+	
 }